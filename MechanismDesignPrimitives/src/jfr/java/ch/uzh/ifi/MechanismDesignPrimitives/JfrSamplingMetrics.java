@@ -0,0 +1,203 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The class implements sampling metrics as Java Flight Recorder events, so that the jpmf can be profiled with a local
+ * recording (e.g., -XX:StartFlightRecording) without a metrics backend. Generation of samples and evaluation of
+ * marginals are recorded as individual events; cumulative counters, including the cache hit ratio, are recorded as
+ * a periodic event until the object is closed. Requires a JDK with the jdk.jfr API (8u262+ or 11+), therefore the
+ * class is kept out of the core library and compiled by the 'jfr' profile only.
+ * @author Dmitry Moor
+ *
+ */
+public class JfrSamplingMetrics implements ISamplingMetrics, AutoCloseable
+{
+
+	/**
+	 * A simple constructor.
+	 */
+	public JfrSamplingMetrics()
+	{
+		_periodicHook = this::recordStatistics;
+		FlightRecorder.addPeriodicEvent(SamplingStatisticsEvent.class, _periodicHook);
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISamplingMetrics#samplesGenerated(int, long, long)
+	 */
+	@Override
+	public void samplesGenerated(int numberOfSamples, long numberOfExplodedBombs, long elapsedNanos) 
+	{
+		_nSamples.addAndGet(numberOfSamples);
+		_nExplodedBombs.addAndGet(numberOfExplodedBombs);
+		
+		SamplesGeneratedEvent event = new SamplesGeneratedEvent();
+		if( event.shouldCommit() )
+		{
+			event.numberOfSamples = numberOfSamples;
+			event.numberOfExplodedBombs = numberOfExplodedBombs;
+			event.elapsed = elapsedNanos;
+			event.samplesPerSecond = elapsedNanos > 0 ? numberOfSamples * 1e9 / elapsedNanos : 0.;
+			event.commit();
+		}
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISamplingMetrics#cacheAccessed(ch.uzh.ifi.MechanismDesignPrimitives.MarginalQuery, boolean)
+	 */
+	@Override
+	public void cacheAccessed(MarginalQuery query, boolean isHit) 
+	{
+		(isHit ? _nCacheHits : _nCacheMisses).incrementAndGet();
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISamplingMetrics#marginalsEvaluated(ch.uzh.ifi.MechanismDesignPrimitives.MarginalQuery[], int, int, long)
+	 */
+	@Override
+	public void marginalsEvaluated(MarginalQuery[] queries, int numberOfSamples, int numberOfAcceptedSamples, long elapsedNanos) 
+	{
+		_nQueries.addAndGet(queries.length);
+		_nScannedSamples.addAndGet(numberOfSamples);
+		_nAcceptedSamples.addAndGet(numberOfAcceptedSamples);
+		
+		MarginalsEvaluatedEvent event = new MarginalsEvaluatedEvent();
+		if( event.shouldCommit() )
+		{
+			event.numberOfQueries = queries.length;
+			event.query = queries.length > 0 ? queries[0].toString() : "";
+			event.numberOfSamples = numberOfSamples;
+			event.numberOfAcceptedSamples = numberOfAcceptedSamples;
+			event.acceptanceRate = numberOfSamples > 0 ? (double)numberOfAcceptedSamples / numberOfSamples : 0.;
+			event.elapsed = elapsedNanos;
+			event.commit();
+		}
+	}
+	
+	/**
+	 * The method stops recording of cumulative counters.
+	 * @see java.lang.AutoCloseable#close()
+	 */
+	@Override
+	public void close()
+	{
+		FlightRecorder.removePeriodicEvent(_periodicHook);
+	}
+	
+	/**
+	 * The method records cumulative counters.
+	 */
+	private void recordStatistics()
+	{
+		long nCacheHits = _nCacheHits.get();
+		long nCacheAccesses = nCacheHits + _nCacheMisses.get();
+		long nScannedSamples = _nScannedSamples.get();
+		
+		SamplingStatisticsEvent event = new SamplingStatisticsEvent();
+		event.numberOfSamples = _nSamples.get();
+		event.numberOfExplodedBombs = _nExplodedBombs.get();
+		event.numberOfQueries = _nQueries.get();
+		event.acceptanceRate = nScannedSamples > 0 ? (double)_nAcceptedSamples.get() / nScannedSamples : 0.;
+		event.cacheHitRatio = nCacheAccesses > 0 ? (double)nCacheHits / nCacheAccesses : 0.;
+		event.commit();
+	}
+	
+	@Name("ch.uzh.ifi.MechanismDesignPrimitives.SamplesGenerated")
+	@Label("Samples Generated")
+	@Category({"Mechanism Design", "Joint PMF"})
+	@Description("A range of samples of the jpmf was generated")
+	@StackTrace(false)
+	static class SamplesGeneratedEvent extends Event
+	{
+		@Label("Number of Samples")
+		int numberOfSamples;
+		
+		@Label("Number of Exploded Bombs")
+		long numberOfExplodedBombs;
+		
+		@Label("Elapsed Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long elapsed;
+		
+		@Label("Samples per Second")
+		double samplesPerSecond;
+	}
+	
+	@Name("ch.uzh.ifi.MechanismDesignPrimitives.MarginalsEvaluated")
+	@Label("Marginals Evaluated")
+	@Category({"Mechanism Design", "Joint PMF"})
+	@Description("Marginal probabilities of queries with the same conditioning were evaluated")
+	@StackTrace(false)
+	static class MarginalsEvaluatedEvent extends Event
+	{
+		@Label("Number of Queries")
+		int numberOfQueries;
+		
+		@Label("First Query")
+		String query;
+		
+		@Label("Number of Samples")
+		int numberOfSamples;
+		
+		@Label("Number of Accepted Samples")
+		int numberOfAcceptedSamples;
+		
+		@Label("Acceptance Rate")
+		@Percentage
+		double acceptanceRate;
+		
+		@Label("Elapsed Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long elapsed;
+	}
+	
+	@Name("ch.uzh.ifi.MechanismDesignPrimitives.SamplingStatistics")
+	@Label("Sampling Statistics")
+	@Category({"Mechanism Design", "Joint PMF"})
+	@Description("Cumulative counters of the sampling hot path")
+	@StackTrace(false)
+	@Period("1 s")
+	static class SamplingStatisticsEvent extends Event
+	{
+		@Label("Number of Samples")
+		long numberOfSamples;
+		
+		@Label("Number of Exploded Bombs")
+		long numberOfExplodedBombs;
+		
+		@Label("Number of Queries")
+		long numberOfQueries;
+		
+		@Label("Acceptance Rate")
+		@Percentage
+		double acceptanceRate;
+		
+		@Label("Cache Hit Ratio")
+		@Percentage
+		double cacheHitRatio;
+	}
+	
+	private Runnable _periodicHook;							//The hook recording cumulative counters
+	private AtomicLong _nSamples = new AtomicLong();		//The number of generated samples
+	private AtomicLong _nExplodedBombs = new AtomicLong();	//The number of bombs which exploded
+	private AtomicLong _nQueries = new AtomicLong();		//The number of evaluated queries
+	private AtomicLong _nScannedSamples = new AtomicLong();	//The number of samples queries were evaluated on
+	private AtomicLong _nAcceptedSamples = new AtomicLong();//The number of samples satisfying conditioning of queries
+	private AtomicLong _nCacheHits = new AtomicLong();		//The number of cache hits
+	private AtomicLong _nCacheMisses = new AtomicLong();	//The number of cache misses
+}
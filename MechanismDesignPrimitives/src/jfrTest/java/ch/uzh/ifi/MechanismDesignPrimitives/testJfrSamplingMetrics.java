@@ -0,0 +1,99 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+
+import ch.uzh.ifi.GraphAlgorithms.Graph;
+import ch.uzh.ifi.GraphAlgorithms.Vertex;
+import ch.uzh.ifi.GraphAlgorithms.VertexCell;
+
+public class testJfrSamplingMetrics {
+	
+	/**
+	 * The method builds a grid dependency graph of the specified size (ids of nodes start from 1).
+	 */
+	private Graph createGrid(int nRows, int nCols)
+	{
+		List<Vertex> vertices = new LinkedList<Vertex>();
+		for(int i = 0; i < nRows * nCols; ++i)
+			vertices.add(new Vertex(i+1));
+		
+		List<List<VertexCell> > adjacencyLists = new LinkedList<List<VertexCell> >();
+		for(int i = 0; i < nRows * nCols; ++i)
+		{
+			List<VertexCell> neighbors = new LinkedList<VertexCell>();
+			int row = i / nCols;
+			int col = i % nCols;
+			if( row > 0 )			neighbors.add(new VertexCell(vertices.get(i - nCols), 1.));
+			if( row < nRows - 1 )	neighbors.add(new VertexCell(vertices.get(i + nCols), 1.));
+			if( col > 0 )			neighbors.add(new VertexCell(vertices.get(i - 1), 1.));
+			if( col < nCols - 1 )	neighbors.add(new VertexCell(vertices.get(i + 1), 1.));
+			adjacencyLists.add(neighbors);
+		}
+		return new Graph(vertices, adjacencyLists);
+	}
+	
+	/**
+	 * The test checks that generation of samples and evaluation of marginals are recorded as JFR events and that
+	 * only bombs which exploded are counted.
+	 */
+	@Test
+	public void testRecordedEvents() throws IOException
+	{
+		Graph grid = createGrid(4, 4);
+		List<IBombingStrategy> bombs = new LinkedList<IBombingStrategy>();
+		bombs.add(new FocusedBombingStrategy(grid, 1., 0.4, 0.3));
+		bombs.add(new FocusedBombingStrategy(grid, 0., 0.2, 0.1));						//Never explodes
+		
+		JointProbabilityMass jpmf = new JointProbabilityMass(grid);
+		jpmf.setNumberOfSamples(1000);
+		jpmf.setNumberOfBombsToThrow(3);
+		jpmf.setBombs(bombs, Arrays.asList(0.5, 0.5));
+		jpmf.setSeed(43L);
+		
+		Path file = Files.createTempFile("jpmf", ".jfr");
+		try(Recording recording = new Recording(); JfrSamplingMetrics metrics = new JfrSamplingMetrics())
+		{
+			recording.enable("ch.uzh.ifi.MechanismDesignPrimitives.SamplesGenerated");
+			recording.enable("ch.uzh.ifi.MechanismDesignPrimitives.MarginalsEvaluated");
+			recording.start();
+			jpmf.setSamplingMetrics(metrics);
+			jpmf.update();
+			jpmf.getMarginalProbability(Arrays.asList(1, 2), Arrays.asList(6), Arrays.asList(1.));
+			recording.stop();
+			recording.dump(file);
+			
+			long nSamples = 0;
+			long nExplodedBombs = 0;
+			long nEvaluatedSamples = 0;
+			for(RecordedEvent event : RecordingFile.readAllEvents(file))
+				if( event.getEventType().getName().endsWith("SamplesGenerated") )
+				{
+					nSamples += event.getInt("numberOfSamples");
+					nExplodedBombs += event.getLong("numberOfExplodedBombs");
+				}
+				else if( event.getEventType().getName().endsWith("MarginalsEvaluated") )
+					nEvaluatedSamples += event.getInt("numberOfSamples");
+			
+			assertTrue( nSamples == 1000 );
+			assertTrue( nExplodedBombs > 1000 && nExplodedBombs < 2000 );					//About a half of 3000 bombs
+			assertTrue( nEvaluatedSamples == 1000 );
+		}
+		finally
+		{
+			Files.deleteIfExists(file);
+		}
+	}
+}
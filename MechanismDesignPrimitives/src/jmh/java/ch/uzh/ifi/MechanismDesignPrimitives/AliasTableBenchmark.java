@@ -0,0 +1,85 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The benchmark compares the throughput of bomb selection using the alias table against the rejection loop
+ * previously used by JointProbabilityMass. The probability of the k-th bomb is proportional to decay^k, i.e.,
+ * smaller decays give more skewed distributions.
+ * @author Dmitry Moor
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AliasTableBenchmark 
+{
+	@Param({"4", "16", "64"})
+	public int _numberOfBombs;
+	
+	@Param({"1.0", "0.5", "0.1"})
+	public double _decay;
+	
+	@Setup
+	public void setup()
+	{
+		double total = 0.;
+		for(int i = 0; i < _numberOfBombs; ++i)
+			total += Math.pow(_decay, i);
+		
+		_probDistribution = new ArrayList<Double>();
+		for(int i = 0; i < _numberOfBombs; ++i)
+			_probDistribution.add( Math.pow(_decay, i) / total );
+		
+		_aliasTable = new AliasTable(_probDistribution);
+		_generator = new SplittableRandomGenerator(1L);
+	}
+	
+	@Benchmark
+	public int aliasTable()
+	{
+		return _aliasTable.sample(_generator);
+	}
+	
+	@Benchmark
+	public int rejectionLoop()
+	{
+		do
+		{
+			int bombToThrow = _generator.nextInt(_probDistribution.size());
+			double prob = _generator.nextDouble();
+			if( prob <= _probDistribution.get(bombToThrow) )
+				return bombToThrow;
+		}
+		while(true);
+	}
+	
+	public static void main(String[] args) throws RunnerException 
+	{
+		new Runner(new OptionsBuilder().include(AliasTableBenchmark.class.getSimpleName()).build()).run();
+	}
+	
+	private List<Double> _probDistribution;
+	private AliasTable _aliasTable;
+	private IRandomGenerator _generator;
+}
@@ -0,0 +1,65 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The benchmark measures the additive cost of bundles of atomic bids of different sizes.
+ * @author Dmitry Moor
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AtomicBidBenchmark 
+{
+	@Param({"1", "10", "100"})
+	public int _numberOfItems;
+	
+	@Setup
+	public void setup()
+	{
+		List<Integer> items = new ArrayList<Integer>();
+		_costs = new ArrayList<Double>();
+		for(int i = 0; i < _numberOfItems; ++i)
+		{
+			items.add(i+1);
+			_costs.add(0.1 * (i+1));
+		}
+		
+		_bid = new AtomicBid(1, items, 1.);
+	}
+	
+	@Benchmark
+	public double computeCost()
+	{
+		return _bid.computeCost(_costs);
+	}
+	
+	public static void main(String[] args) throws RunnerException 
+	{
+		new Runner(new OptionsBuilder().include(AtomicBidBenchmark.class.getSimpleName()).build()).run();
+	}
+	
+	private AtomicBid _bid;
+	private List<Double> _costs;
+}
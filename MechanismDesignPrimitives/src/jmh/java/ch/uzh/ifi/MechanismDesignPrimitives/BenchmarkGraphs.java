@@ -0,0 +1,46 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import ch.uzh.ifi.GraphAlgorithms.Graph;
+import ch.uzh.ifi.GraphAlgorithms.Vertex;
+import ch.uzh.ifi.GraphAlgorithms.VertexCell;
+
+/**
+ * The class creates dependency graphs used by benchmarks.
+ * @author Dmitry Moor
+ *
+ */
+class BenchmarkGraphs 
+{
+	private BenchmarkGraphs()
+	{
+	}
+	
+	/**
+	 * The method creates a grid dependency graph where every node depends on its horizontal and vertical neighbors.
+	 * @param gridSize - the number of rows (and columns) of the grid
+	 * @return the grid graph with gridSize^2 nodes
+	 */
+	static Graph createGrid(int gridSize)
+	{
+		List<Vertex> vertices = new LinkedList<Vertex>();
+		for(int i = 0; i < gridSize * gridSize; ++i)
+			vertices.add(new Vertex(i+1));
+		
+		List<List<VertexCell> > adjacencyLists = new LinkedList<List<VertexCell> >();
+		for(int i = 0; i < gridSize * gridSize; ++i)
+		{
+			List<VertexCell> neighbors = new LinkedList<VertexCell>();
+			int row = i / gridSize;
+			int col = i % gridSize;
+			if( row > 0 )				neighbors.add(new VertexCell(vertices.get(i - gridSize), 1.));
+			if( row < gridSize - 1 )	neighbors.add(new VertexCell(vertices.get(i + gridSize), 1.));
+			if( col > 0 )				neighbors.add(new VertexCell(vertices.get(i - 1), 1.));
+			if( col < gridSize - 1 )	neighbors.add(new VertexCell(vertices.get(i + 1), 1.));
+			adjacencyLists.add(neighbors);
+		}
+		return new Graph(vertices, adjacencyLists);
+	}
+}
@@ -0,0 +1,64 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import ch.uzh.ifi.GraphAlgorithms.Graph;
+
+/**
+ * The benchmark measures the throughput of a single bomb applied to a sample. Epicenters cycle over all nodes of
+ * the grid; the sample is not restored between bombs as the cost of a bomb does not depend on availabilities.
+ * @author Dmitry Moor
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FocusedBombingStrategyBenchmark 
+{
+	@Param({"10", "100"})
+	public int _gridSize;
+	
+	@Setup
+	public void setup()
+	{
+		Graph grid = BenchmarkGraphs.createGrid(_gridSize);
+		_bomb = new FocusedBombingStrategy(grid, 1., 0.4, 0.3);
+		_sample = new double[_gridSize * _gridSize];
+		Arrays.fill(_sample, 1.);
+	}
+	
+	@Benchmark
+	public double[] applyBomb()
+	{
+		_node = _node + 1 < _sample.length ? _node + 1 : 0;
+		return _bomb.applyBomb(_sample, _node);
+	}
+	
+	public static void main(String[] args) throws RunnerException 
+	{
+		new Runner(new OptionsBuilder().include(FocusedBombingStrategyBenchmark.class.getSimpleName()).build()).run();
+	}
+	
+	private FocusedBombingStrategy _bomb;
+	private double[] _sample;
+	private int _node;
+}
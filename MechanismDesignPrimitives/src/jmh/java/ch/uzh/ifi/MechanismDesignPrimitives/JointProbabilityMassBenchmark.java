@@ -0,0 +1,105 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import ch.uzh.ifi.GraphAlgorithms.Graph;
+
+/**
+ * The benchmark measures generation of samples of the jpmf and evaluation of marginal probabilities over the
+ * generated samples. The cache of marginal probabilities is disabled, so that every invocation scans the samples.
+ * @author Dmitry Moor
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JointProbabilityMassBenchmark 
+{
+	@Param({"10"})
+	public int _gridSize;
+	
+	@Param({"10000", "100000"})
+	public int _numberOfSamples;
+	
+	@Param({"1", "4"})
+	public int _numberOfThreads;
+	
+	@Param({"DENSE", "COLUMN_MAJOR"})
+	public SampleStorage _sampleStorage;
+	
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		Graph grid = BenchmarkGraphs.createGrid(_gridSize);
+		List<IBombingStrategy> bombs = new LinkedList<IBombingStrategy>();
+		bombs.add(new FocusedBombingStrategy(grid, 1., 0.4, 0.3));
+		bombs.add(new FocusedBombingStrategy(grid, 1., 0.2, 0.1));
+		
+		_jpmf = new JointProbabilityMass(grid);
+		_jpmf.setNumberOfSamples(_numberOfSamples);
+		_jpmf.setNumberOfBombsToThrow(3);
+		_jpmf.setBombs(bombs, Arrays.asList(0.5, 0.5));
+		_jpmf.setSampleStorage(_sampleStorage);
+		_jpmf.setNumberOfThreads(_numberOfThreads);
+		_jpmf.setCacheCapacity(0);
+		_jpmf.setSeed(1L);
+		_jpmf.update();
+		
+		_bundle = Arrays.asList(_gridSize + 2, _gridSize + 3, 2 * _gridSize + 3);
+		_conditioningRVs = Arrays.asList(1, 2 * _gridSize + 2);
+		_realizations = Arrays.asList(1., 1.);
+	}
+	
+	@Benchmark
+	public JointProbabilityMass update()
+	{
+		_jpmf.setSeed(_seed++);
+		_jpmf.update();
+		return _jpmf;
+	}
+	
+	@Benchmark
+	public double marginalProbability()
+	{
+		return _jpmf.getMarginalProbability(_bundle, new LinkedList<Integer>(), new LinkedList<Double>());
+	}
+	
+	@Benchmark
+	public double conditionalMarginalProbability()
+	{
+		return _jpmf.getMarginalProbability(_bundle, _conditioningRVs, _realizations);
+	}
+	
+	public static void main(String[] args) throws RunnerException 
+	{
+		new Runner(new OptionsBuilder().include(JointProbabilityMassBenchmark.class.getSimpleName()).build()).run();
+	}
+	
+	private JointProbabilityMass _jpmf;
+	private List<Integer> _bundle;
+	private List<Integer> _conditioningRVs;
+	private List<Double> _realizations;
+	private long _seed;
+}
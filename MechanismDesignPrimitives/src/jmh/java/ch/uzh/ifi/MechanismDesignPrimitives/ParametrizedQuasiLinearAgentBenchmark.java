@@ -0,0 +1,65 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The benchmark measures the consumption problem of a parametrized quasi-linear agent. Low prices make the agent
+ * consume its expected threshold, high prices make it spend the endowment only.
+ * @author Dmitry Moor
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParametrizedQuasiLinearAgentBenchmark 
+{
+	@Param({"0.5", "5.0"})
+	public double _price;
+	
+	@Setup
+	public void setup()
+	{
+		List<LinearThresholdValueFunction> valueFunctions = new LinkedList<LinearThresholdValueFunction>();
+		valueFunctions.add(new LinearThresholdValueFunction(0, 0, Arrays.asList(0., 0.)));
+		valueFunctions.add(new LinearThresholdValueFunction(4, 1, Arrays.asList(0., 1.)));
+		valueFunctions.add(new LinearThresholdValueFunction(4, 1, Arrays.asList(1., 0.)));
+		valueFunctions.add(new LinearThresholdValueFunction(6, 2, Arrays.asList(1., 1.)));
+		
+		_agent = new ParametrizedQuasiLinearAgent(1, 1., valueFunctions);
+		_agent.updateAllocProbabilityDistribution(3, 2);
+	}
+	
+	@Benchmark
+	public List<Double> solveConsumptionProblem()
+	{
+		return _agent.solveConsumptionProblem(_price);
+	}
+	
+	public static void main(String[] args) throws RunnerException 
+	{
+		new Runner(new OptionsBuilder().include(ParametrizedQuasiLinearAgentBenchmark.class.getSimpleName()).build()).run();
+	}
+	
+	private ParametrizedQuasiLinearAgent _agent;
+}
@@ -0,0 +1,147 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import ch.uzh.ifi.GraphAlgorithms.Graph;
+
+/**
+ * The benchmark compares sampling schemes of the jpmf. Every invocation generates samples with a new seed and
+ * estimates a marginal probability. JMH reports the time per estimate as the primary metric and, as secondary
+ * metrics (see Efficiency), the empirical variance of estimates and the work-normalized variance, i.e., the variance
+ * times CPU-seconds per estimate. The smaller the work-normalized variance, the more efficient the scheme.
+ * @author Dmitry Moor
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SamplingSchemeBenchmark 
+{
+	@Param({"MONTE_CARLO", "STRATIFIED", "QUASI_MONTE_CARLO"})
+	public SamplingScheme _samplingScheme;
+	
+	@Param({"10"})
+	public int _gridSize;
+	
+	@Param({"1000"})
+	public int _numberOfSamples;
+	
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		Graph grid = BenchmarkGraphs.createGrid(_gridSize);
+		
+		List<IBombingStrategy> bombs = new LinkedList<IBombingStrategy>();
+		bombs.add(new FocusedBombingStrategy(grid, 1., 0.4, 0.3));
+		bombs.add(new FocusedBombingStrategy(grid, 1., 0.2, 0.1));
+		
+		_jpmf = new JointProbabilityMass(grid);
+		_jpmf.setNumberOfSamples(_numberOfSamples);
+		_jpmf.setNumberOfBombsToThrow(3);
+		_jpmf.setBombs(bombs, Arrays.asList(0.5, 0.5));
+		_jpmf.setSamplingScheme(_samplingScheme);
+		_bundle = Arrays.asList(_gridSize + 2, _gridSize + 3, 2 * _gridSize + 3);
+		_threadMXBean = ManagementFactory.getThreadMXBean();
+	}
+	
+	@Benchmark
+	public double estimateMarginalProbability(Efficiency efficiency)
+	{
+		long cpuTime = _threadMXBean.getCurrentThreadCpuTime();
+		_jpmf.setSeed(_seed++);
+		_jpmf.update();
+		double marginal = _jpmf.getMarginalProbability(_bundle, new LinkedList<Integer>(), new LinkedList<Double>());
+		
+		efficiency.add(marginal, _threadMXBean.getCurrentThreadCpuTime() - cpuTime);
+		return marginal;
+	}
+	
+	/**
+	 * Secondary metrics of the benchmark written to the JMH results (e.g., jmh-result.json). JMH sums event counters
+	 * over measurement iterations, so every iteration publishes its variance of estimates and its work-normalized
+	 * variance (variance times CPU-seconds per estimate) divided by the number of measurement iterations, i.e., the
+	 * reported values are averages over iterations. The benchmark is single-threaded.
+	 * @author Dmitry Moor
+	 *
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Efficiency
+	{
+		public double variance;									// Variance of estimates (share of the iteration)
+		public double workNormalizedVariance;					// Variance times CPU-seconds per estimate (share of the iteration)
+		
+		@Setup(Level.Iteration)
+		public void reset(BenchmarkParams params)
+		{
+			_nIterations = params.getMeasurement().getCount();
+			_cpuTime = 0;
+			_count = 0;
+			_sum = 0.;
+			_sumOfSquares = 0.;
+			variance = 0.;
+			workNormalizedVariance = 0.;
+		}
+		
+		/**
+		 * The method adds an estimate to statistics of the iteration.
+		 * @param marginal - an estimate of the marginal probability
+		 * @param cpuTime - CPU time spent on the estimate in nanoseconds
+		 */
+		public void add(double marginal, long cpuTime)
+		{
+			_cpuTime += cpuTime;
+			_count += 1;
+			_sum += marginal;
+			_sumOfSquares += marginal * marginal;
+			if( _count < 2 )
+				return;
+			
+			double iterationVariance = Math.max(0., (_sumOfSquares - _sum * _sum / _count) / (_count - 1));
+			variance = iterationVariance / _nIterations;
+			workNormalizedVariance = iterationVariance * _cpuTime * 1e-9 / _count / _nIterations;
+		}
+		
+		private int _nIterations;
+		private long _cpuTime;
+		private long _count;
+		private double _sum;
+		private double _sumOfSquares;
+	}
+	
+	public static void main(String[] args) throws RunnerException 
+	{
+		new Runner(new OptionsBuilder().include(SamplingSchemeBenchmark.class.getSimpleName()).build()).run();
+	}
+	
+	private JointProbabilityMass _jpmf;
+	private List<Integer> _bundle;
+	private ThreadMXBean _threadMXBean;
+	private long _seed;
+}
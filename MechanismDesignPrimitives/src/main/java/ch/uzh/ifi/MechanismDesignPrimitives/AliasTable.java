@@ -0,0 +1,107 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.List;
+
+/**
+ * The class implements Vose's alias method for sampling from a discrete probability distribution in O(1) time
+ * using exactly two random draws per sample.
+ * @author Dmitry Moor
+ *
+ */
+public class AliasTable 
+{
+
+	/**
+	 * The constructor builds the alias table for the specified distribution.
+	 * @param weights - non-negative weights of outcomes (normalized by the constructor)
+	 */
+	public AliasTable(List<Double> weights)
+	{
+		_size = weights.size();
+		if( _size == 0 ) throw new RuntimeException("Empty distribution");
+		
+		double total = 0.;
+		for(Double w : weights)
+			if( w < 0 ) throw new RuntimeException("Negative weight: " + w);
+			else total += w;
+		if( total <= 0. ) throw new RuntimeException("All weights are zero");
+		
+		_probability = new double[_size];
+		_alias = new int[_size];
+		
+		double[] scaled = new double[_size];									//Weights scaled so that the average is 1
+		int[] small = new int[_size];
+		int[] large = new int[_size];
+		int nSmall = 0;
+		int nLarge = 0;
+		for(int i = 0; i < _size; ++i)
+		{
+			scaled[i] = weights.get(i) * _size / total;
+			if( scaled[i] < 1. )	small[nSmall++] = i;
+			else					large[nLarge++] = i;
+		}
+		
+		while( nSmall > 0 && nLarge > 0 )										//Fill the column of a small outcome with a large one
+		{
+			int l = small[--nSmall];
+			int g = large[--nLarge];
+			_probability[l] = scaled[l];
+			_alias[l] = g;
+			
+			scaled[g] = (scaled[g] + scaled[l]) - 1.;
+			if( scaled[g] < 1. )	small[nSmall++] = g;
+			else					large[nLarge++] = g;
+		}
+		
+		while( nLarge > 0 )														//Remaining columns are full (up to rounding errors)
+		{
+			int g = large[--nLarge];
+			_probability[g] = 1.;
+			_alias[g] = g;
+		}
+		while( nSmall > 0 )
+		{
+			int l = small[--nSmall];
+			_probability[l] = 1.;
+			_alias[l] = l;
+		}
+	}
+	
+	/**
+	 * The method draws an outcome from the distribution.
+	 * @param generator - a random number generator
+	 * @return an index of the outcome
+	 */
+	public int sample(IRandomGenerator generator)
+	{
+		int column = generator.nextInt(_size);
+		return generator.nextDouble() < _probability[column] ? column : _alias[column];
+	}
+	
+	/**
+	 * The method samples an index of the distribution using a single uniform, i.e., the integer part of u*size
+	 * selects a column of the table and the fractional part decides between the column and its alias. It allows to
+	 * drive the table by stratified or low-discrepancy uniforms.
+	 * @param u - a uniform value in [0, 1)
+	 * @return an index of the distribution
+	 */
+	public int sample(double u)
+	{
+		double scaled = u * _size;
+		int column = Math.min((int)scaled, _size - 1);
+		return scaled - column < _probability[column] ? column : _alias[column];
+	}
+	
+	/**
+	 * The method returns the number of outcomes of the distribution.
+	 * @return the number of outcomes
+	 */
+	public int size()
+	{
+		return _size;
+	}
+	
+	private int _size;											//Number of outcomes
+	private double[] _probability;								//Probability to keep the outcome of a column
+	private int[] _alias;										//The alternative outcome of a column
+}
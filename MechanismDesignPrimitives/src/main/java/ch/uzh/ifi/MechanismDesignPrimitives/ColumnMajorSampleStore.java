@@ -0,0 +1,145 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.Arrays;
+
+/**
+ * The class implements a column-major sample storage: availabilities of every RV in all samples are stored
+ * contiguously. Queries over ranges of samples only read the columns of the bundle and of the conditioning RVs and
+ * reduce them element-wise, while samples are written in blocks which are transposed tile by tile.
+ * @author Dmitry Moor
+ *
+ */
+public class ColumnMajorSampleStore implements ISampleStore
+{
+
+	/**
+	 * A simple constructor.
+	 * @param numberOfSamples - the number of samples
+	 * @param numberOfRandomVars - the number of RVs of every sample
+	 */
+	public ColumnMajorSampleStore(int numberOfSamples, int numberOfRandomVars)
+	{
+		_columns = new double[numberOfRandomVars][numberOfSamples];
+		_numberOfSamples = numberOfSamples;
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getNumberOfSamples()
+	 */
+	@Override
+	public int getNumberOfSamples() 
+	{
+		return _numberOfSamples;
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getNumberOfRandomVars()
+	 */
+	@Override
+	public int getNumberOfRandomVars() 
+	{
+		return _columns.length;
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getAvailability(int, int)
+	 */
+	@Override
+	public double getAvailability(int sIdx, int rvIdx) 
+	{
+		return _columns[rvIdx][sIdx];
+	}
+
+	/**
+	 * The method returns a copy of the sample gathered from all columns.
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getSample(int)
+	 */
+	@Override
+	public double[] getSample(int sIdx) 
+	{
+		double[] sample = new double[_columns.length];
+		for(int j = 0; j < _columns.length; ++j)
+			sample[j] = _columns[j][sIdx];
+		return sample;
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#setSample(int, double[])
+	 */
+	@Override
+	public void setSample(int sIdx, double[] sample) 
+	{
+		for(int j = 0; j < _columns.length; ++j)
+			_columns[j][sIdx] = sample[j];
+	}
+	
+	/**
+	 * The method transposes the block into columns tile by tile, so that both the block and the columns are
+	 * accessed in cache-friendly order.
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#setSamples(int, double[], int)
+	 */
+	@Override
+	public void setSamples(int sIdx, double[] block, int count)
+	{
+		int numberOfRandomVars = _columns.length;
+		for(int firstRow = 0; firstRow < count; firstRow += _tileSize)
+		{
+			int lastRow = Math.min(count, firstRow + _tileSize);
+			for(int firstRV = 0; firstRV < numberOfRandomVars; firstRV += _tileSize)
+			{
+				int lastRV = Math.min(numberOfRandomVars, firstRV + _tileSize);
+				for(int j = firstRV; j < lastRV; ++j)
+				{
+					double[] column = _columns[j];
+					for(int r = firstRow; r < lastRow; ++r)
+						column[sIdx + r] = block[r * numberOfRandomVars + j];
+				}
+			}
+		}
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#computeAvailabilities(int, int, int[], double[])
+	 */
+	@Override
+	public void computeAvailabilities(int fromSample, int toSample, int[] bundle, double[] availabilities)
+	{
+		int nSamples = toSample - fromSample;
+		Arrays.fill(availabilities, 0, nSamples, Double.MAX_VALUE);
+		for(int k = 0; k < bundle.length; ++k)
+		{
+			double[] column = _columns[bundle[k]];
+			for(int i = 0; i < nSamples; ++i)
+				if( column[fromSample + i] < availabilities[i] )
+					availabilities[i] = column[fromSample + i];
+		}
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#checkSatisfied(int, int, int[], double[], boolean[])
+	 */
+	@Override
+	public void checkSatisfied(int fromSample, int toSample, int[] rvs, double[] realizations, boolean[] isSatisfied)
+	{
+		int nSamples = toSample - fromSample;
+		Arrays.fill(isSatisfied, 0, nSamples, true);
+		for(int k = 0; k < rvs.length; ++k)
+		{
+			double[] column = _columns[rvs[k]];
+			double realization = realizations[k];
+			for(int i = 0; i < nSamples; ++i)
+				isSatisfied[i] &= column[fromSample + i] == realization;
+		}
+	}
+	
+	private static final int _tileSize = 64;				//The size of tiles of transposed blocks
+	
+	private double[][] _columns;							//Availabilities of every RV in all samples
+	private int _numberOfSamples;							//The number of samples
+}
@@ -0,0 +1,137 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.Arrays;
+
+/**
+ * The class implements a copy-on-write view of a sample storage. Copies of the view share the underlying storage
+ * (which is never modified) and store only samples which were overwritten through setSample(...). Overwritten
+ * samples are never modified after they were stored either, so copies can share them too.
+ * @author Dmitry Moor
+ *
+ */
+public class CopyOnWriteSampleStore implements ISampleStore
+{
+
+	/**
+	 * A simple constructor.
+	 * @param base - the shared sample storage (should not be modified after the view is created)
+	 */
+	public CopyOnWriteSampleStore(ISampleStore base)
+	{
+		_base = base;
+		_overwrittenSamples = null;
+	}
+	
+	/**
+	 * The method creates a copy of the view in O(1) time if no samples were overwritten.
+	 * @return a copy of the view
+	 */
+	public synchronized CopyOnWriteSampleStore copyIt()
+	{
+		CopyOnWriteSampleStore copy = new CopyOnWriteSampleStore(_base);
+		if( _overwrittenSamples != null )
+			copy._overwrittenSamples = _overwrittenSamples.clone();
+		return copy;
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getNumberOfSamples()
+	 */
+	@Override
+	public int getNumberOfSamples() 
+	{
+		return _base.getNumberOfSamples();
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getNumberOfRandomVars()
+	 */
+	@Override
+	public int getNumberOfRandomVars() 
+	{
+		return _base.getNumberOfRandomVars();
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getAvailability(int, int)
+	 */
+	@Override
+	public double getAvailability(int sIdx, int rvIdx) 
+	{
+		double[][] overwrittenSamples = _overwrittenSamples;
+		if( overwrittenSamples != null && overwrittenSamples[sIdx] != null )
+			return overwrittenSamples[sIdx][rvIdx];
+		return _base.getAvailability(sIdx, rvIdx);
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getSample(int)
+	 */
+	@Override
+	public double[] getSample(int sIdx) 
+	{
+		double[][] overwrittenSamples = _overwrittenSamples;
+		if( overwrittenSamples != null && overwrittenSamples[sIdx] != null )
+			return overwrittenSamples[sIdx];
+		return _base.getSample(sIdx);
+	}
+
+	/**
+	 * The method stores a private copy of the sample.
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#setSample(int, double[])
+	 */
+	@Override
+	public synchronized void setSample(int sIdx, double[] sample) 
+	{
+		if( _overwrittenSamples == null )
+			_overwrittenSamples = new double[_base.getNumberOfSamples()][];
+		_overwrittenSamples[sIdx] = Arrays.copyOf(sample, _base.getNumberOfRandomVars());
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#computeAvailability(int, int[])
+	 */
+	@Override
+	public double computeAvailability(int sIdx, int[] bundle)
+	{
+		double[][] overwrittenSamples = _overwrittenSamples;
+		if( overwrittenSamples == null || overwrittenSamples[sIdx] == null )
+			return _base.computeAvailability(sIdx, bundle);
+		return ISampleStore.super.computeAvailability(sIdx, bundle);
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#isSatisfied(int, int[], double[])
+	 */
+	@Override
+	public boolean isSatisfied(int sIdx, int[] rvs, double[] realizations)
+	{
+		double[][] overwrittenSamples = _overwrittenSamples;
+		if( overwrittenSamples == null || overwrittenSamples[sIdx] == null )
+			return _base.isSatisfied(sIdx, rvs, realizations);
+		return ISampleStore.super.isSatisfied(sIdx, rvs, realizations);
+	}
+	
+	/**
+	 * The method returns the number of samples overwritten in this view.
+	 * @return the number of private samples
+	 */
+	public synchronized int getNumberOfOverwrittenSamples()
+	{
+		int nOverwritten = 0;
+		if( _overwrittenSamples != null )
+			for(double[] sample : _overwrittenSamples)
+				if( sample != null )
+					nOverwritten += 1;
+		return nOverwritten;
+	}
+	
+	private ISampleStore _base;									//Shared (immutable) sample storage
+	private volatile double[][] _overwrittenSamples;			//Private samples of this view (null if none)
+}
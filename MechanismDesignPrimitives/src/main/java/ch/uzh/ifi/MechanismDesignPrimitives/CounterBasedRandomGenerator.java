@@ -0,0 +1,74 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+/**
+ * The class implements a counter-based random number generator: the i-th output is a bijective hash of the pair
+ * (key, i). Since there is no state except the counter, any position of the stream can be accessed directly.
+ * @author Dmitry Moor
+ *
+ */
+public class CounterBasedRandomGenerator implements IRandomGenerator
+{
+
+	/**
+	 * A simple constructor.
+	 * @param seed - a random seed used as the key of the generator
+	 */
+	public CounterBasedRandomGenerator(long seed)
+	{
+		_key = mix64(seed);
+		_counter = 0;
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IRandomGenerator#nextLong()
+	 */
+	@Override
+	public long nextLong() 
+	{
+		return mix64( mix64(_key + (_counter++) * 0x9E3779B97F4A7C15L) ^ _key );	//Two rounds to decorrelate nearby keys
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IRandomGenerator#split()
+	 */
+	@Override
+	public IRandomGenerator split() 
+	{
+		return new CounterBasedRandomGenerator(nextLong());
+	}
+	
+	/**
+	 * The method returns the position of the generator in its stream.
+	 * @return the counter
+	 */
+	public long getCounter()
+	{
+		return _counter;
+	}
+	
+	/**
+	 * The method moves the generator to the specified position of its stream.
+	 * @param counter - a new position
+	 */
+	public void setCounter(long counter)
+	{
+		_counter = counter;
+	}
+	
+	/**
+	 * Stafford's variant 13 of the 64-bit finalizer.
+	 * @param z - a value to be mixed
+	 * @return the mixed value
+	 */
+	private static long mix64(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	
+	private long _key;										//The key of the stream
+	private long _counter;									//The position in the stream
+}
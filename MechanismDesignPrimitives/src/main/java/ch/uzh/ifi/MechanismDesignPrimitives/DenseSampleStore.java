@@ -0,0 +1,114 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+/**
+ * The class implements the default sample storage: every sample is a separate array of doubles.
+ * @author Dmitry Moor
+ *
+ */
+public class DenseSampleStore implements ISampleStore
+{
+
+	/**
+	 * A simple constructor.
+	 * @param numberOfSamples - the number of samples
+	 * @param numberOfRandomVars - the number of RVs of every sample
+	 */
+	public DenseSampleStore(int numberOfSamples, int numberOfRandomVars)
+	{
+		_samples = new double[numberOfSamples][numberOfRandomVars];
+		_numberOfRandomVars = numberOfRandomVars;
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getNumberOfSamples()
+	 */
+	@Override
+	public int getNumberOfSamples() 
+	{
+		return _samples.length;
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getNumberOfRandomVars()
+	 */
+	@Override
+	public int getNumberOfRandomVars() 
+	{
+		return _numberOfRandomVars;
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getAvailability(int, int)
+	 */
+	@Override
+	public double getAvailability(int sIdx, int rvIdx) 
+	{
+		return _samples[sIdx][rvIdx];
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getSample(int)
+	 */
+	@Override
+	public double[] getSample(int sIdx) 
+	{
+		return _samples[sIdx];
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#setSample(int, double[])
+	 */
+	@Override
+	public void setSample(int sIdx, double[] sample) 
+	{
+		System.arraycopy(sample, 0, _samples[sIdx], 0, _numberOfRandomVars);
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#setSamples(int, double[], int)
+	 */
+	@Override
+	public void setSamples(int sIdx, double[] block, int count)
+	{
+		for(int r = 0; r < count; ++r)
+			System.arraycopy(block, r * _numberOfRandomVars, _samples[sIdx + r], 0, _numberOfRandomVars);
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#computeAvailability(int, int[])
+	 */
+	@Override
+	public double computeAvailability(int sIdx, int[] bundle)
+	{
+		double[] sample = _samples[sIdx];
+		double minAvailability = Double.MAX_VALUE;
+		for(int k = 0; k < bundle.length; ++k)
+			if( sample[bundle[k]] < minAvailability )
+				minAvailability = sample[bundle[k]];
+		return minAvailability;
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#isSatisfied(int, int[], double[])
+	 */
+	@Override
+	public boolean isSatisfied(int sIdx, int[] rvs, double[] realizations)
+	{
+		double[] sample = _samples[sIdx];
+		for(int k = 0; k < rvs.length; ++k)
+			if( sample[rvs[k]] != realizations[k] )
+				return false;
+		return true;
+	}
+	
+	private double[][] _samples;							//An array of samples
+	private int _numberOfRandomVars;						//The number of RVs of every sample
+}
@@ -0,0 +1,282 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import ch.uzh.ifi.GraphAlgorithms.Graph;
+
+/**
+ * The class computes the joint probability mass function of the "bombing" process exactly. Bombs are thrown one by
+ * one: every state of the dependency graph (a vector of availabilities of all nodes) is expanded with every possible
+ * epicenter, bomb type and explosion outcome, and identical states are merged in a hash map (dynamic programming).
+ * The approach is suitable for small graphs and few bombs. If the number of distinct states exceeds the specified
+ * limit, the class falls back to sampling using JointProbabilityMass. Bombing strategies should be deterministic,
+ * i.e., should not draw random numbers when applying bombs.
+ * @author Dmitry Moor
+ *
+ */
+public class ExactJointProbabilityMass implements IJointProbabilityMass
+{
+
+	private static final Logger _logger = LogManager.getLogger(ExactJointProbabilityMass.class);
+	
+	/**
+	 * @param dependencyGraph - the graph representing dependencies between random variables
+	 */
+	public ExactJointProbabilityMass(Graph dependencyGraph)
+	{
+		if( dependencyGraph.getVertices().size() == 0)	throw new RuntimeException("No RVs specified");
+		
+		_numberOfRandomVars = dependencyGraph.getVertices().size();
+		_dependencyGraph = dependencyGraph;
+	}
+	
+	/**
+	 * The method computes the jpmf exactly or generates samples if the state space is too large.
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IJointProbabilityMass#update()
+	 */
+	@Override
+	public void update()
+	{
+		_states = null;
+		_probabilities = null;
+		_samplingJpmf = null;
+		
+		Map<State, Double> states = new HashMap<State, Double>();
+		double[] initialState = new double[_numberOfRandomVars];
+		Arrays.fill(initialState, 1.);
+		states.put(new State(initialState), 1.);
+		
+		for(int j = 0; j < _nBombsToThrow; ++j)
+		{
+			states = throwBomb(states);
+			if( states == null )
+			{
+				_logger.info("The number of states exceeds " + _maxNumberOfStates + ", falling back to sampling.");
+				_samplingJpmf = new JointProbabilityMass(_dependencyGraph);
+				_samplingJpmf.setNumberOfSamples(_nSamples);
+				_samplingJpmf.setNumberOfBombsToThrow(_nBombsToThrow);
+				_samplingJpmf.setBombs(_bombingStrategies, _bombsProbDistribution);
+				_samplingJpmf.setSeed(_seed);
+				_samplingJpmf.update();
+				return;
+			}
+		}
+		
+		_states = new double[states.size()][];
+		_probabilities = new double[states.size()];
+		int i = 0;
+		for(Map.Entry<State, Double> entry : states.entrySet())
+		{
+			_states[i] = entry.getKey()._availabilities;
+			_probabilities[i++] = entry.getValue();
+		}
+		_logger.debug("The exact jpmf has " + _states.length + " states.");
+	}
+	
+	/**
+	 * The method throws one more bomb, i.e., computes the distribution over states after the bomb given the
+	 * distribution before it.
+	 * @param states - states and their probabilities before the bomb is thrown
+	 * @return states and their probabilities after the bomb is thrown or null if there are too many states
+	 */
+	private Map<State, Double> throwBomb(Map<State, Double> states)
+	{
+		double dudProbability = 0.;
+		for(int bombIdx = 0; bombIdx < _bombingStrategies.size(); ++bombIdx)
+			dudProbability += _bombsProbDistribution.get(bombIdx) * (1. - _bombingStrategies.get(bombIdx).getProbabilityToExplode());
+		
+		Map<State, Double> newStates = new HashMap<State, Double>(2 * states.size());
+		for(Map.Entry<State, Double> entry : states.entrySet())
+		{
+			double probability = entry.getValue();
+			if( dudProbability > 0 )													//The bomb does not explode
+				newStates.merge(entry.getKey(), probability * dudProbability, Double::sum);
+			
+			for(int node = 0; node < _numberOfRandomVars; ++node)
+				for(int bombIdx = 0; bombIdx < _bombingStrategies.size(); ++bombIdx)
+				{
+					IBombingStrategy bomb = _bombingStrategies.get(bombIdx);
+					double explosionProbability = probability * _bombsProbDistribution.get(bombIdx) * bomb.getProbabilityToExplode() / _numberOfRandomVars;
+					if( explosionProbability == 0 )
+						continue;
+					
+					double[] availabilities = bomb.applyBomb(Arrays.copyOf(entry.getKey()._availabilities, _numberOfRandomVars), node);
+					newStates.merge(new State(availabilities), explosionProbability, Double::sum);
+				}
+			
+			if( newStates.size() > _maxNumberOfStates )
+				return null;
+		}
+		return newStates;
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IJointProbabilityMass#getMarginalProbability(java.util.List, java.util.List, java.util.List)
+	 */
+	@Override
+	public double getMarginalProbability(List<Integer> bundle, List<Integer> conditioningRVs, List<Double> realizationsOfRVs)
+	{
+		if( _samplingJpmf != null )
+			return _samplingJpmf.getMarginalProbability(bundle, conditioningRVs, realizationsOfRVs);
+		if( _states == null ) throw new RuntimeException("The jpmf is not computed, call update() first");
+		
+		MarginalQuery query = new MarginalQuery(bundle, conditioningRVs, realizationsOfRVs, _numberOfRandomVars);
+		double marginalProbability = 0.;
+		double conditioningProbability = 0.;
+		for(int i = 0; i < _states.length; ++i)
+			if( query.isSatisfiedBy(_states[i]) )
+			{
+				marginalProbability += _probabilities[i] * query.computeAvailability(_states[i]);
+				conditioningProbability += _probabilities[i];
+			}
+		
+		if( conditioningProbability == 0 )
+			_logger.warn("The conditioning of " + query + " has zero probability.");
+		return conditioningProbability > 0 ? marginalProbability / conditioningProbability : Double.NaN;
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IJointProbabilityMass#getMarginalProbabilities(java.util.List, java.util.List, java.util.List)
+	 */
+	@Override
+	public List<Double> getMarginalProbabilities(List<List<Integer>> bundles, List<Integer> conditioningRVs, List<Double> realizationsOfRVs)
+	{
+		if( _samplingJpmf != null )
+			return _samplingJpmf.getMarginalProbabilities(bundles, conditioningRVs, realizationsOfRVs);
+		
+		List<Double> marginalProbabilities = new ArrayList<Double>(bundles.size());
+		for(List<Integer> bundle : bundles)
+			marginalProbabilities.add( getMarginalProbability(bundle, conditioningRVs, realizationsOfRVs) );
+		return marginalProbabilities;
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IJointProbabilityMass#setNumberOfBombsToThrow(int)
+	 */
+	@Override
+	public void setNumberOfBombsToThrow(int numberOfBombs)
+	{
+		_nBombsToThrow = numberOfBombs;
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IJointProbabilityMass#setBombs(java.util.List, java.util.List)
+	 */
+	@Override
+	public void setBombs(List<IBombingStrategy> bombingStrategies, List<Double> probDistribution)
+	{
+		if( bombingStrategies.size() != probDistribution.size() ) throw new RuntimeException("Dimension mismatch");
+		
+		_bombingStrategies = bombingStrategies;
+		_bombsProbDistribution = probDistribution;
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IJointProbabilityMass#getBombs()
+	 */
+	@Override
+	public List<IBombingStrategy> getBombs()
+	{
+		return _bombingStrategies;
+	}
+	
+	/**
+	 * The method sets the max number of distinct states of the exact computation.
+	 * @param maxNumberOfStates - the max number of states
+	 */
+	public void setMaxNumberOfStates(int maxNumberOfStates)
+	{
+		_maxNumberOfStates = maxNumberOfStates;
+	}
+	
+	/**
+	 * The method sets the number of samples used if the jpmf cannot be computed exactly.
+	 * @param numberOfSamples - the number of samples
+	 */
+	public void setNumberOfSamples(int numberOfSamples)
+	{
+		_nSamples = numberOfSamples;
+	}
+	
+	/**
+	 * The method sets the seed used if the jpmf cannot be computed exactly.
+	 * @param seed - the seed
+	 */
+	public void setSeed(long seed)
+	{
+		_seed = seed;
+	}
+	
+	/**
+	 * The method checks if the jpmf was computed exactly.
+	 * @return true if the jpmf was computed exactly, false if it was sampled
+	 */
+	public boolean isExact()
+	{
+		return _samplingJpmf == null;
+	}
+	
+	/**
+	 * The method returns the number of distinct states of the exactly computed jpmf.
+	 * @return the number of states
+	 */
+	public int getNumberOfStates()
+	{
+		return _states != null ? _states.length : 0;
+	}
+	
+	/**
+	 * The class wraps availabilities of all nodes to be used as a key of a hash map.
+	 * @author Dmitry Moor
+	 *
+	 */
+	private static class State
+	{
+		public State(double[] availabilities)
+		{
+			_availabilities = availabilities;
+			_hashCode = Arrays.hashCode(availabilities);
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return _hashCode;
+		}
+		
+		@Override
+		public boolean equals(Object other)
+		{
+			return other instanceof State && Arrays.equals(_availabilities, ((State)other)._availabilities);
+		}
+		
+		private double[] _availabilities;							// Availabilities of all nodes
+		private int _hashCode;										// The cached hash code
+	}
+	
+	private int _numberOfRandomVars;						//The number of random variables (= #nodes in the dependency graph)
+	private Graph _dependencyGraph;							//Dependency graph of the spatial domain
+	private List<IBombingStrategy> _bombingStrategies;		//Possible bombing strategies
+	private List<Double>		   _bombsProbDistribution;	//Probability distribution over possible bombing strategies
+	private int _nBombsToThrow;								//Number of bombs to be used by the bombing algorithm
+	private int _maxNumberOfStates = 1000000;				//Max number of distinct states of the exact computation
+	
+	private double[][] _states;								//Distinct states of the graph after all bombs were thrown
+	private double[] _probabilities;						//Probabilities of states
+	
+	private int _nSamples = 10000;							//Number of samples used if the state space is too large
+	private long _seed = System.nanoTime();					//Seed used if the state space is too large
+	private JointProbabilityMass _samplingJpmf;				//The sampled jpmf (null if the jpmf is computed exactly)
+}
@@ -1,9 +1,6 @@
 package ch.uzh.ifi.MechanismDesignPrimitives;
 
-import java.util.List;
-
 import ch.uzh.ifi.GraphAlgorithms.Graph;
-import ch.uzh.ifi.GraphAlgorithms.VertexCell;
 
 /**
  * 
@@ -26,6 +23,7 @@ public class FocusedBombingStrategy extends SimpleBombingStrategy
 		_probabilityToExplode = probabilityToExplode;
 		_primaryReductionCoefficient = primaryReductionCoefficient;
 		_secondaryReductionCoefficient = secondaryReductionCoefficient;
+		buildNeighborIndex();
 	}
 	
 	/**
@@ -37,12 +35,68 @@ public class FocusedBombingStrategy extends SimpleBombingStrategy
 	{
 		sample[nodeToBomb] -= _primaryReductionCoefficient;					// 1 -> (1-_primaryReductionCoef)
 		
-		List<VertexCell> itsNeighbors = _dependencyGraph.getAdjacencyLists().get(nodeToBomb);
-		for(int i = 0; i < itsNeighbors.size(); ++i)
-			sample[itsNeighbors.get(i)._v.getID()-1] =  Math.max(0., (double)sample[itsNeighbors.get(i)._v.getID()-1] - _secondaryReductionCoefficient );
+		for(int i = _neighborOffsets[nodeToBomb]; i < _neighborOffsets[nodeToBomb+1]; ++i)
+			sample[_neighbors[i]] =  Math.max(0., sample[_neighbors[i]] - _secondaryReductionCoefficient );
 		
 		return sample;
 	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IBombingStrategy#applyBombs(double[], int, int[], int[], int, ch.uzh.ifi.MechanismDesignPrimitives.IRandomGenerator)
+	 */
+	@Override
+	public void applyBombs(double[] block, int numberOfRandomVars, int[] rows, int[] nodesToBomb, int count, IRandomGenerator generator)
+	{
+		for(int k = 0; k < count; ++k)
+		{
+			int offset = rows[k] * numberOfRandomVars;
+			int nodeToBomb = nodesToBomb[k];
+			block[offset + nodeToBomb] -= _primaryReductionCoefficient;
+			for(int i = _neighborOffsets[nodeToBomb]; i < _neighborOffsets[nodeToBomb+1]; ++i)
+				block[offset + _neighbors[i]] = Math.max(0., block[offset + _neighbors[i]] - _secondaryReductionCoefficient );
+		}
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IBombingStrategy#supportsBatchBombing()
+	 */
+	@Override
+	public boolean supportsBatchBombing()
+	{
+		return true;
+	}
+	
+	/**
+	 * The method returns the CSR snapshot of neighbors, i.e., the bomb affects the epicenter and its neighbors.
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IBombingStrategy#getAffectedNodes()
+	 */
+	@Override
+	public int[] getAffectedNodes()
+	{
+		return _neighbors;
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IBombingStrategy#getAffectedNodesFrom(int)
+	 */
+	@Override
+	public int getAffectedNodesFrom(int nodeToBomb)
+	{
+		return _neighborOffsets[nodeToBomb];
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IBombingStrategy#getAffectedNodesTo(int)
+	 */
+	@Override
+	public int getAffectedNodesTo(int nodeToBomb)
+	{
+		return _neighborOffsets[nodeToBomb+1];
+	}
 
 	protected double _primaryReductionCoefficient;							//Reduction coef. for the epicenter of the bomb explosion
 	protected double _secondaryReductionCoefficient;						//Reduction coef. for neighbors of the bomb explosion
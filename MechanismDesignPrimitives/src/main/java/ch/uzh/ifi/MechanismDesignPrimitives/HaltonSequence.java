@@ -0,0 +1,96 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.Arrays;
+
+/**
+ * The class implements a randomized Halton low-discrepancy sequence: the d-th coordinate of the i-th point is the
+ * radical inverse of i in the base of the d-th prime whose digits are scrambled by a random permutation of the
+ * dimension, shifted by a random value modulo 1 (Cranley-Patterson rotation). Without scrambling, coordinates of
+ * large prime bases are strongly correlated over long runs of points (e.g., the jpmf throwing many bombs uses many
+ * dimensions), scrambling of digits breaks these correlations. The digit 0 is never permuted, so that the trailing
+ * zeros of the expansion keep contributing nothing. Points can be accessed in any order, which allows blocks of
+ * samples to be generated independently.
+ * @author Dmitry Moor
+ *
+ */
+public class HaltonSequence 
+{
+
+	/**
+	 * A simple constructor.
+	 * @param numberOfDimensions - the number of dimensions (coordinates) of every point
+	 * @param generator - a random number generator used to draw permutations of digits and shifts of coordinates
+	 */
+	public HaltonSequence(int numberOfDimensions, IRandomGenerator generator)
+	{
+		_bases = computePrimes(numberOfDimensions);
+		_permutations = new int[numberOfDimensions][];
+		for(int d = 0; d < numberOfDimensions; ++d)
+		{
+			_permutations[d] = new int[_bases[d]];
+			for(int k = 1; k < _bases[d]; ++k)						//Fisher-Yates shuffle of non-zero digits
+			{
+				int j = 1 + generator.nextInt(k);
+				_permutations[d][k] = _permutations[d][j];
+				_permutations[d][j] = k;
+			}
+		}
+		_shifts = new double[numberOfDimensions];
+		generator.nextDoubles(_shifts, numberOfDimensions);
+	}
+	
+	/**
+	 * The method returns a coordinate of a point of the sequence.
+	 * @param index - an index of the point
+	 * @param dimension - an index of the coordinate
+	 * @return the coordinate, a value in [0, 1)
+	 */
+	public double get(long index, int dimension)
+	{
+		int base = _bases[dimension];
+		int[] permutation = _permutations[dimension];
+		double value = 0.;
+		double factor = 1. / base;
+		for(long i = index + 1; i > 0; i /= base)						//The point 0 is skipped
+		{
+			value += permutation[(int)(i % base)] * factor;
+			factor /= base;
+		}
+		
+		value += _shifts[dimension];
+		return value >= 1. ? value - 1. : value;
+	}
+	
+	/**
+	 * The method returns the number of dimensions of the sequence.
+	 * @return the number of dimensions
+	 */
+	public int getNumberOfDimensions()
+	{
+		return _bases.length;
+	}
+	
+	/**
+	 * The method computes the specified number of first primes.
+	 * @param numberOfPrimes - the number of primes
+	 * @return an array of primes
+	 */
+	private static int[] computePrimes(int numberOfPrimes)
+	{
+		int[] primes = new int[numberOfPrimes];
+		int nPrimes = 0;
+		for(int candidate = 2; nPrimes < numberOfPrimes; ++candidate)
+		{
+			boolean isPrime = true;
+			for(int k = 0; k < nPrimes && primes[k] * primes[k] <= candidate && isPrime; ++k)
+				isPrime = candidate % primes[k] != 0;
+			if( isPrime )
+				primes[nPrimes++] = candidate;
+		}
+		return Arrays.copyOf(primes, nPrimes);
+	}
+	
+	private int[] _bases;										//Bases (primes) of coordinates
+	private int[][] _permutations;								//Random permutations of digits of coordinates
+	private double[] _shifts;									//Random shifts of coordinates
+}
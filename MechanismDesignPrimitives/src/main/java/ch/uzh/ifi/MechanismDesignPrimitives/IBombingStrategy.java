@@ -16,4 +16,91 @@ public interface IBombingStrategy
 	 */
 	public double[] applyBomb(double[] sample, int nodeToBomb);
 	
+	/**
+	 * The method triggers the bomb application to the specified sample. Strategies with a random effect should draw
+	 * from the specified generator, which makes sampling reproducible and free of shared state.
+	 * @param sample - a sample to which the bomb should be applied
+	 * @param nodeToBomb - specifies the epicenter of the bomb explosion.
+	 * @param generator - a random number generator of the calling thread
+	 * @return the sample affected by the bomb
+	 */
+	public default double[] applyBomb(double[] sample, int nodeToBomb, IRandomGenerator generator)
+	{
+		return applyBomb(sample, nodeToBomb);
+	}
+	
+	/**
+	 * The method returns the probability that a thrown bomb actually explodes, i.e., affects the sample. Bombs which
+	 * do not explode (duds) are not applied at all.
+	 * @return the probability to explode
+	 */
+	public default double getProbabilityToExplode()
+	{
+		return 1.;
+	}
+	
+	/**
+	 * The method returns nodes which may be affected by bombs of the strategy in the compressed sparse row (CSR) layout
+	 * shared by all epicenters, so that no array is allocated per epicenter. A bomb exploding at nodeToBomb may affect
+	 * the epicenter itself and nodes getAffectedNodes()[ getAffectedNodesFrom(nodeToBomb) ... 
+	 * getAffectedNodesTo(nodeToBomb)-1 ] (which may include the epicenter as well). It allows to generate samples
+	 * without touching nodes which are not affected by any bomb.
+	 * @return (0-based) indices of possibly affected nodes of all epicenters (should not be modified) or null if unknown
+	 */
+	public default int[] getAffectedNodes()
+	{
+		return null;
+	}
+	
+	/**
+	 * The method returns the offset of the first node affected by the bomb in getAffectedNodes().
+	 * @param nodeToBomb - specifies the epicenter of the bomb explosion.
+	 * @return the offset of the first affected node
+	 */
+	public default int getAffectedNodesFrom(int nodeToBomb)
+	{
+		return 0;
+	}
+	
+	/**
+	 * The method returns the offset following the last node affected by the bomb in getAffectedNodes().
+	 * @param nodeToBomb - specifies the epicenter of the bomb explosion.
+	 * @return the offset following the last affected node
+	 */
+	public default int getAffectedNodesTo(int nodeToBomb)
+	{
+		return 0;
+	}
+	
+	/**
+	 * The method applies bombs to several samples of a contiguous block of samples. Bombs are applied in the order
+	 * in which they are listed. The default implementation copies every sample to a separate array and applies the
+	 * bomb using applyBomb(...); strategies supporting batch bombing should work over the block directly.
+	 * @param block - a block of samples stored row by row, i.e., the j-th RV of the r-th sample is block[r*nRVs + j]
+	 * @param numberOfRandomVars - the number of RVs of every sample
+	 * @param rows - indices of samples (rows of the block) to which bombs should be applied
+	 * @param nodesToBomb - epicenters of bomb explosions, one per row
+	 * @param count - the number of bombs to be applied
+	 * @param generator - a random number generator of the calling thread
+	 */
+	public default void applyBombs(double[] block, int numberOfRandomVars, int[] rows, int[] nodesToBomb, int count, IRandomGenerator generator)
+	{
+		double[] sample = new double[numberOfRandomVars];
+		for(int k = 0; k < count; ++k)
+		{
+			System.arraycopy(block, rows[k] * numberOfRandomVars, sample, 0, numberOfRandomVars);
+			double[] bombedSample = applyBomb(sample, nodesToBomb[k], generator);
+			System.arraycopy(bombedSample, 0, block, rows[k] * numberOfRandomVars, numberOfRandomVars);
+		}
+	}
+	
+	/**
+	 * The method checks if the strategy implements applyBombs(...) over blocks of samples directly, i.e., if it is
+	 * worth using instead of applyBomb(...).
+	 * @return true if the strategy supports batch bombing
+	 */
+	public default boolean supportsBatchBombing()
+	{
+		return false;
+	}
 }
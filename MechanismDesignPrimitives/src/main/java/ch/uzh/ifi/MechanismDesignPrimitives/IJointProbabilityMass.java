@@ -0,0 +1,56 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.List;
+
+/**
+ * An interface for joint probability mass functions of availabilities of random variables generated using the
+ * "bombing" approach: a number of bombs is thrown into the dependency graph, every bomb has a random epicenter
+ * (picked uniformly) and a random type (bombing strategy).
+ * @author Dmitry Moor
+ *
+ */
+public interface IJointProbabilityMass 
+{
+
+	/**
+	 * The method sets the number of "bombs" thrown into the dependency graph.
+	 * @param numberOfBombs - number of "bombs"
+	 */
+	public void setNumberOfBombsToThrow(int numberOfBombs);
+	
+	/**
+	 * The method sets up the list of bombing strategies and the corresponding probability distribution
+	 * @param bombingStrategies - a list of bombing strategies
+	 * @param probDistribution - probability distribution
+	 */
+	public void setBombs(List<IBombingStrategy> bombingStrategies, List<Double> probDistribution);
+	
+	/**
+	 * The method returns a list of bombing strategies.
+	 * @return a list of bombing strategies
+	 */
+	public List<IBombingStrategy> getBombs();
+	
+	/**
+	 * The method (re)computes the jpmf.
+	 */
+	public void update();
+	
+	/**
+	 * The method returns a marginal probability of a bundle of nodes to be available.
+	 * @param bundle a bundle
+	 * @param conditioningRVs a list of realized random variables
+	 * @param realizationsOfRVs realized values of conditioningRVs
+	 * @return the marginal probability (NaN if the conditioning cannot be satisfied)
+	 */
+	public double getMarginalProbability(List<Integer> bundle, List<Integer> conditioningRVs, List<Double> realizationsOfRVs);
+	
+	/**
+	 * The method returns marginal probabilities of several bundles with the same conditioning.
+	 * @param bundles a list of bundles
+	 * @param conditioningRVs a list of realized random variables (common for all bundles)
+	 * @param realizationsOfRVs realized values of conditioningRVs
+	 * @return marginal probabilities of bundles (in the same order as bundles)
+	 */
+	public List<Double> getMarginalProbabilities(List<List<Integer>> bundles, List<Integer> conditioningRVs, List<Double> realizationsOfRVs);
+}
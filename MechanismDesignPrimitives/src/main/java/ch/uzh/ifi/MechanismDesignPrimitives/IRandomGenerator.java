@@ -0,0 +1,64 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+/**
+ * An interface for seedable pseudo random number generators used for sampling. Implementations are not thread safe,
+ * every thread should use its own generator obtained by split().
+ * @author Dmitry Moor
+ *
+ */
+public interface IRandomGenerator 
+{
+
+	/**
+	 * The method returns the next pseudo random 64-bit value.
+	 * @return a uniformly distributed long value
+	 */
+	public long nextLong();
+	
+	/**
+	 * The method creates a new generator which is statistically independent of this one. The state of this generator
+	 * is advanced, so that subsequent splits produce different generators.
+	 * @return a new generator
+	 */
+	public IRandomGenerator split();
+	
+	/**
+	 * The method returns the next pseudo random value uniformly distributed in [0, 1).
+	 * @return a uniformly distributed double value
+	 */
+	public default double nextDouble()
+	{
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+	
+	/**
+	 * The method fills the array with pseudo random values uniformly distributed in [0, 1).
+	 * @param values - an array to be filled
+	 * @param count - the number of values to be generated
+	 */
+	public default void nextDoubles(double[] values, int count)
+	{
+		for(int k = 0; k < count; ++k)
+			values[k] = nextDouble();
+	}
+	
+	/**
+	 * The method returns the next pseudo random value uniformly distributed in [0, bound) (Lemire's multiply-shift
+	 * method without bias).
+	 * @param bound - the upper bound (exclusive), should be positive
+	 * @return a uniformly distributed int value
+	 */
+	public default int nextInt(int bound)
+	{
+		if( bound <= 0 ) throw new RuntimeException("The bound should be positive: " + bound);
+		
+		long product = (nextLong() >>> 32) * bound;
+		if( (product & 0xFFFFFFFFL) < bound )
+		{
+			long threshold = (0x100000000L - bound) % bound;
+			while( (product & 0xFFFFFFFFL) < threshold )
+				product = (nextLong() >>> 32) * bound;
+		}
+		return (int)(product >>> 32);
+	}
+}
@@ -0,0 +1,124 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+/**
+ * An interface for different storage layouts of samples of a joint probability mass function. A sample is a vector
+ * of availabilities of all random variables. Samples may be written concurrently by several threads as long as
+ * every thread writes its own samples.
+ * @author Dmitry Moor
+ *
+ */
+public interface ISampleStore 
+{
+
+	/**
+	 * The method returns the number of samples which can be stored.
+	 * @return the number of samples
+	 */
+	public int getNumberOfSamples();
+	
+	/**
+	 * The method returns the number of random variables of every sample.
+	 * @return the number of RVs
+	 */
+	public int getNumberOfRandomVars();
+	
+	/**
+	 * The method returns the availability of a random variable in a sample.
+	 * @param sIdx - an index of the sample
+	 * @param rvIdx - a (0-based) index of the RV
+	 * @return the availability of the RV in the sample
+	 */
+	public double getAvailability(int sIdx, int rvIdx);
+	
+	/**
+	 * The method returns the sample. Depending on the layout, the returned array is either the stored sample itself
+	 * or a decoded copy of it, i.e., it should not be modified.
+	 * @param sIdx - an index of the sample
+	 * @return the sample
+	 */
+	public double[] getSample(int sIdx);
+	
+	/**
+	 * The method stores the sample.
+	 * @param sIdx - an index of the sample
+	 * @param sample - availabilities of all RVs
+	 */
+	public void setSample(int sIdx, double[] sample);
+	
+	/**
+	 * The method stores several consecutive samples.
+	 * @param sIdx - an index of the first sample
+	 * @param block - samples stored row by row, i.e., the j-th RV of the r-th sample is block[r*nRVs + j]
+	 * @param count - the number of samples to be stored
+	 */
+	public default void setSamples(int sIdx, double[] block, int count)
+	{
+		int numberOfRandomVars = getNumberOfRandomVars();
+		double[] sample = new double[numberOfRandomVars];
+		for(int r = 0; r < count; ++r)
+		{
+			System.arraycopy(block, r * numberOfRandomVars, sample, 0, numberOfRandomVars);
+			setSample(sIdx + r, sample);
+		}
+	}
+	
+	/**
+	 * The method computes the availability of a bundle in a sample, i.e., the minimal availability of its RVs.
+	 * @param sIdx - an index of the sample
+	 * @param bundle - (0-based) indices of RVs of the bundle
+	 * @return the availability of the bundle (Double.MAX_VALUE for an empty bundle)
+	 */
+	public default double computeAvailability(int sIdx, int[] bundle)
+	{
+		double minAvailability = Double.MAX_VALUE;
+		for(int k = 0; k < bundle.length; ++k)
+		{
+			double availability = getAvailability(sIdx, bundle[k]);
+			if( availability < minAvailability )
+				minAvailability = availability;
+		}
+		return minAvailability;
+	}
+	
+	/**
+	 * The method checks if the specified RVs have the specified realizations in a sample.
+	 * @param sIdx - an index of the sample
+	 * @param rvs - (0-based) indices of RVs
+	 * @param realizations - realizations of the RVs
+	 * @return true if all RVs have the realized values
+	 */
+	public default boolean isSatisfied(int sIdx, int[] rvs, double[] realizations)
+	{
+		for(int k = 0; k < rvs.length; ++k)
+			if( getAvailability(sIdx, rvs[k]) != realizations[k] )
+				return false;
+		return true;
+	}
+	
+	/**
+	 * The method computes availabilities of a bundle in a range of samples.
+	 * @param fromSample - an index of the first sample
+	 * @param toSample - an index of the last sample (exclusive)
+	 * @param bundle - (0-based) indices of RVs of the bundle
+	 * @param availabilities - availabilities of the bundle, the i-th sample is stored at [i - fromSample] (output)
+	 */
+	public default void computeAvailabilities(int fromSample, int toSample, int[] bundle, double[] availabilities)
+	{
+		for(int i = fromSample; i < toSample; ++i)
+			availabilities[i - fromSample] = computeAvailability(i, bundle);
+	}
+	
+	/**
+	 * The method checks if the specified RVs have the specified realizations in a range of samples.
+	 * @param fromSample - an index of the first sample
+	 * @param toSample - an index of the last sample (exclusive)
+	 * @param rvs - (0-based) indices of RVs
+	 * @param realizations - realizations of the RVs
+	 * @param isSatisfied - whether all RVs have the realized values, the i-th sample is stored at [i - fromSample] (output)
+	 */
+	public default void checkSatisfied(int fromSample, int toSample, int[] rvs, double[] realizations, boolean[] isSatisfied)
+	{
+		for(int i = fromSample; i < toSample; ++i)
+			isSatisfied[i - fromSample] = isSatisfied(i, rvs, realizations);
+	}
+}
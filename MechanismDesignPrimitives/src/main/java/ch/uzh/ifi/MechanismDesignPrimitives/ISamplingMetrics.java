@@ -0,0 +1,39 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+/**
+ * An interface for collecting metrics of the sampling hot path of the jpmf, e.g., to find out why an auction round
+ * is slow. Implementations should be cheap and thread safe; they are called by the thread using the jpmf, never by
+ * sampling workers.
+ * @author Dmitry Moor
+ *
+ */
+public interface ISamplingMetrics 
+{
+
+	/**
+	 * The method is called after a range of samples was generated.
+	 * @param numberOfSamples - the number of generated samples
+	 * @param numberOfExplodedBombs - the number of bombs which exploded (bombs which did not explode are not counted)
+	 * @param elapsedNanos - the wall-clock time of generation in nanoseconds
+	 */
+	public void samplesGenerated(int numberOfSamples, long numberOfExplodedBombs, long elapsedNanos);
+	
+	/**
+	 * The method is called when the cache of marginal probabilities is looked up.
+	 * @param query - a compiled query
+	 * @param isHit - true if the marginal probability of the query was cached
+	 */
+	public void cacheAccessed(MarginalQuery query, boolean isHit);
+	
+	/**
+	 * The method is called after marginal probabilities of queries with the same conditioning were evaluated within
+	 * a single pass over samples. The acceptance rate of the conditioning is numberOfAcceptedSamples / numberOfSamples.
+	 * If samples are generated on the fly (streaming and importance sampling estimators), the elapsed time includes
+	 * generation.
+	 * @param queries - compiled queries
+	 * @param numberOfSamples - the number of samples the queries were evaluated on
+	 * @param numberOfAcceptedSamples - the number of samples satisfying the conditioning
+	 * @param elapsedNanos - the wall-clock time of evaluation in nanoseconds
+	 */
+	public void marginalsEvaluated(MarginalQuery[] queries, int numberOfSamples, int numberOfAcceptedSamples, long elapsedNanos);
+}
@@ -0,0 +1,179 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The class generates weighted samples from the importance sampling proposal of a conditional query. Epicenters and
+ * types of bombs are drawn from a proposal distribution which never lets a bomb explode at nodes affecting RVs
+ * conditioned to be fully available and boosts bombs affecting RVs conditioned to be damaged, so that about one
+ * bomb per damaged RV hits it (nodes affected by a bomb are given by IBombingStrategy.getAffectedNodes();
+ * strategies which do not report them are not biased).
+ * @author Dmitry Moor
+ *
+ */
+class ImportanceSampler
+{
+	
+	/**
+	 * The constructor builds the proposal distribution over (node, bomb, explodes) triples.
+	 * @param query - the conditional query
+	 * @param numberOfRandomVars - the number of random variables (= #nodes in the dependency graph)
+	 * @param bombingStrategies - a list of bombing strategies
+	 * @param bombsProbDistribution - the probability distribution over bombing strategies
+	 * @param probabilitiesToExplode - probabilities of bombing strategies to explode (null if all bombs explode)
+	 * @param nBombsToThrow - the number of bombs thrown per sample
+	 */
+	public ImportanceSampler(MarginalQuery query, int numberOfRandomVars, List<IBombingStrategy> bombingStrategies, List<Double> bombsProbDistribution,
+							 double[] probabilitiesToExplode, int nBombsToThrow)
+	{
+		_query = query;
+		_numberOfRandomVars = numberOfRandomVars;
+		_bombingStrategies = bombingStrategies;
+		_nBombsToThrow = nBombsToThrow;
+		int nBombTypes = bombingStrategies.size();
+		
+		boolean[] isConditionedAvailable = new boolean[numberOfRandomVars];
+		boolean[] isConditionedDamaged = new boolean[numberOfRandomVars];
+		int nDamagedRVs = 0;
+		for(int k = 0; k < query.getConditioningRVs().length; ++k)
+			if( query.getRealizations()[k] == 1. )
+				isConditionedAvailable[ query.getConditioningRVs()[k] ] = true;
+			else
+			{
+				isConditionedDamaged[ query.getConditioningRVs()[k] ] = true;
+				nDamagedRVs += 1;
+			}
+		
+		double[] probabilities = new double[2 * numberOfRandomVars * nBombTypes];		//Target probabilities of (node, bomb, explodes) triples
+		boolean[] isBoosted = new boolean[2 * numberOfRandomVars * nBombTypes];
+		double hitProbability = 0.;												//The probability that a bomb damages a damaged RV
+		for(int node = 0; node < numberOfRandomVars; ++node)
+			for(int bombIdx = 0; bombIdx < nBombTypes; ++bombIdx)
+			{
+				int e = 2 * (node * nBombTypes + bombIdx);
+				double probabilityToExplode = probabilitiesToExplode != null ? probabilitiesToExplode[bombIdx] : 1.;
+				probabilities[e] = bombsProbDistribution.get(bombIdx) / numberOfRandomVars * probabilityToExplode;
+				probabilities[e+1] = bombsProbDistribution.get(bombIdx) / numberOfRandomVars * (1. - probabilityToExplode);
+				
+				IBombingStrategy bomb = bombingStrategies.get(bombIdx);
+				int[] affectedNodes = bomb.getAffectedNodes();
+				if( affectedNodes != null )
+				{
+					int from = bomb.getAffectedNodesFrom(node);
+					for(int i = from - 1; i < bomb.getAffectedNodesTo(node); ++i)		//The epicenter first
+					{
+						int affectedNode = i < from ? node : affectedNodes[i];
+						if( isConditionedAvailable[affectedNode] )
+						{
+							isBoosted[e] = false;
+							probabilities[e] = 0.;									//Never explodes in the proposal
+							break;
+						}
+						else if( isConditionedDamaged[affectedNode] )
+							isBoosted[e] = true;
+					}
+				}
+				hitProbability += isBoosted[e] ? probabilities[e] : 0.;
+			}
+		
+		double totalProbability = 0.;
+		for(int e = 0; e < probabilities.length; ++e)
+			totalProbability += probabilities[e];
+		if( totalProbability <= 0 )
+			return;
+		
+		double boost = 1.;									//Boost bombs damaging damaged RVs so that about nDamaged of all bombs hit them
+		double targetHitProbability = Math.min(0.9, (double)nDamagedRVs / nBombsToThrow);
+		if( hitProbability > 0 && hitProbability < targetHitProbability * totalProbability )
+			boost = targetHitProbability / (1. - targetHitProbability) * (totalProbability - hitProbability) / hitProbability;
+		
+		List<Double> proposal = new ArrayList<Double>(probabilities.length);
+		double normalization = totalProbability + (boost - 1.) * hitProbability;
+		_likelihoodRatios = new double[probabilities.length];
+		for(int e = 0; e < probabilities.length; ++e)
+		{
+			proposal.add( isBoosted[e] ? boost * probabilities[e] : probabilities[e] );
+			_likelihoodRatios[e] = (isBoosted[e] ? 1. / boost : 1.) * normalization;		//The ratio of target and proposal probabilities
+		}
+		_proposal = new AliasTable(proposal);
+	}
+	
+	/**
+	 * The method checks if the conditioning of the query can be satisfied by some bomb.
+	 * @return true if the proposal distribution exists and false otherwise
+	 */
+	public boolean isFeasible()
+	{
+		return _proposal != null;
+	}
+	
+	/**
+	 * The method generates weighted samples and accumulates their weights and availabilities of the bundle.
+	 * @param nSamples - the number of samples to be generated
+	 * @param generator - a random number generator
+	 * @return the number of samples satisfying the conditioning, sums of their weights, squared weights,
+	 * weighted availabilities, squared weights times availabilities and squared weighted availabilities followed by
+	 * the number of bombs which exploded in all samples
+	 */
+	public double[] sample(int nSamples, IRandomGenerator generator)
+	{
+		int nBombTypes = _bombingStrategies.size();
+		double[] sums = new double[7];
+		double[] sample = new double[_numberOfRandomVars];
+		for(int i = 0; i < nSamples; ++i)
+		{
+			Arrays.fill(sample, 1.);
+			double weight = 1.;
+			for(int j = 0; j < _nBombsToThrow; ++j)
+			{
+				int e = _proposal.sample(generator);
+				weight *= _likelihoodRatios[e];
+				if( e % 2 == 0 )													//The bomb explodes
+				{
+					sample = _bombingStrategies.get(e / 2 % nBombTypes).applyBomb(sample, e / 2 / nBombTypes, generator);
+					sums[6] += 1;
+				}
+			}
+			
+			if( _query.isSatisfiedBy(sample) )
+			{
+				double availability = _query.computeAvailability(sample);
+				sums[0] += 1;
+				sums[1] += weight;
+				sums[2] += weight * weight;
+				sums[3] += weight * availability;
+				sums[4] += weight * weight * availability;
+				sums[5] += weight * weight * availability * availability;
+			}
+		}
+		return sums;
+	}
+	
+	/**
+	 * The method computes the estimate of the marginal probability from accumulated weighted samples. The estimate
+	 * is the weighted mean of availabilities of samples satisfying the conditioning, its variance is the delta-method
+	 * variance of the ratio estimator.
+	 * @param sums - sums accumulated by sample(...)
+	 * @param z - the quantile of the standard normal distribution of the confidence level
+	 * @return the estimate of the marginal probability with its precision and the effective sample size
+	 */
+	public MarginalEstimate estimate(double[] sums, double z)
+	{
+		double sumOfWeights = sums[1];
+		if( sumOfWeights == 0 )
+			return new MarginalEstimate(Double.NaN, Double.POSITIVE_INFINITY, 0, 0.);
+		
+		double mean = sums[3] / sumOfWeights;
+		double variance = Math.max(0., sums[5] - 2 * mean * sums[4] + mean * mean * sums[2]) / sumOfWeights / sumOfWeights;
+		return new MarginalEstimate(mean, z * Math.sqrt(variance), (int)sums[0], sumOfWeights * sumOfWeights / sums[2]);
+	}
+	
+	private MarginalQuery _query;								// The conditional query
+	private int _numberOfRandomVars;							// The number of random variables
+	private List<IBombingStrategy> _bombingStrategies;			// Possible bombing strategies
+	private int _nBombsToThrow;									// Number of bombs thrown per sample
+	private AliasTable _proposal;								// The proposal distribution over (node, bomb, explodes) triples (null if infeasible)
+	private double[] _likelihoodRatios;							// Ratios of target and proposal probabilities of triples
+}
@@ -0,0 +1,56 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The class implements a fork-join worker generating weighted samples for a range of blocks. The generator of a
+ * range is split into generators of its halves, so that estimates do not depend on the number of threads.
+ * @author Dmitry Moor
+ *
+ */
+class ImportanceSamplingWorker extends RecursiveTask<double[]>
+{
+	private static final long serialVersionUID = 1L;
+	
+	private ImportanceSampler _sampler;							// The sampler of weighted samples
+	private int _nSamples;										// The total number of samples to be generated
+	private int _blockLow;										// Lower bound of the block index range
+	private int _blockHigh;										// Upper bound (exclusive) of the block index range
+	private IRandomGenerator _generator;						// The generator of the range of blocks
+	
+	public ImportanceSamplingWorker(ImportanceSampler sampler, int nSamples, int blockLow, int blockHigh, IRandomGenerator generator)
+	{
+		_sampler = sampler;
+		_nSamples = nSamples;
+		_blockLow = blockLow;
+		_blockHigh = blockHigh;
+		_generator = generator;
+	}
+	
+	@Override
+	protected double[] compute()
+	{
+		if( _blockHigh - _blockLow <= 1 )
+			return _sampler.sample(Math.min(_nSamples - _blockLow * JointProbabilityMass._samplesPerBlock, JointProbabilityMass._samplesPerBlock), _generator);
+		
+		int blockMid = (_blockLow + _blockHigh) >>> 1;
+		ImportanceSamplingWorker left = new ImportanceSamplingWorker(_sampler, _nSamples, _blockLow, blockMid, _generator.split());
+		ImportanceSamplingWorker right = new ImportanceSamplingWorker(_sampler, _nSamples, blockMid, _blockHigh, _generator.split());
+		double[] sums;
+		double[] rightSums;
+		if( !inForkJoinPool() )										//Sequential sampling
+		{
+			sums = left.compute();
+			rightSums = right.compute();
+		}
+		else
+		{
+			left.fork();
+			rightSums = right.compute();
+			sums = left.join();
+		}
+		for(int k = 0; k < sums.length; ++k)
+			sums[k] += rightSums[k];
+		return sums;
+	}
+}
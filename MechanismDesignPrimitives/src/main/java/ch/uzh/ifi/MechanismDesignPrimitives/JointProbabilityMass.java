@@ -1,14 +1,16 @@
 package ch.uzh.ifi.MechanismDesignPrimitives;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.IntStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.apache.commons.math3.distribution.NormalDistribution;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
-import org.openjdk.jmh.annotations.Benchmark;
 
 import ch.uzh.ifi.GraphAlgorithms.Graph;
 
@@ -16,7 +18,7 @@ import ch.uzh.ifi.GraphAlgorithms.Graph;
  * The class implements functionality for modeling joint probability mass functions using the "bombing" approach.
  * @author Dmitry Moor
  */
-public class JointProbabilityMass
+public class JointProbabilityMass implements IJointProbabilityMass
 {
 	
 	private static final Logger _logger = LogManager.getLogger(JointProbabilityMass.class);
@@ -32,17 +34,31 @@ public class JointProbabilityMass
 		_numberOfRandomVars = dependencyGraph.getVertices().size();
 		_dependencyGraph = dependencyGraph;
 		
-		_samples = new double[_nSamples][_numberOfRandomVars];
-		_marginalAvailabilities = new HashMap<List<Integer>, Double>();
+		_samples = createSampleStore(_nSamples);
+		_marginalAvailabilities = new MarginalProbabilityCache(_defaultCacheCapacity);
+		setSeed(System.nanoTime());
 	}
 	
 	/**
-	 * The method regenerates jpmf
+	 * The method regenerates jpmf (cached marginal probabilities are invalidated). In the lazy mode samples are only
+	 * marked as stale and generators of their blocks are drawn, so that samples are the same as in the eager mode.
 	 */
+	@Override
 	public void update()
 	{
-		_samples = new double[_nSamples][_numberOfRandomVars];
-		generateSamples();
+		_samples = createSampleStore(_nSamples);
+		if( _isLazy )
+		{
+			SampleBlocks blocks = drawBlocks(0, _nSamples);
+			_nStaleBlocks = blocks.getNumberOfBlocks();
+			_staleBlocks = blocks;
+		}
+		else
+		{
+			_staleBlocks = null;
+			generateSamples();
+		}
+		invalidate();
 	}
 	
 	/**
@@ -57,15 +73,41 @@ public class JointProbabilityMass
 	}
 	
 	/**
-	 * The method generates a deep copy of this object
-	 * @return a deep copy of the object
+	 * The method generates a copy of this object. The copy shares samples with this object using copy-on-write
+	 * semantics, i.e., the copy takes O(1) time and memory and samples are duplicated only when overwritten by
+	 * setSample(...) of either of the objects (see setSample(...)); samples of this object are not changed. The master
+	 * generator of the copy is split off the master generator of this object, so that every copy generates its own
+	 * samples when updated.
+	 * @return a copy of the object
 	 */
 	public JointProbabilityMass copyIt()
 	{
+		ensureSamples();
 		JointProbabilityMass jpmf = new JointProbabilityMass(_dependencyGraph);
-		jpmf.setNumberOfSamples(_nSamples);
-		for(int i = 0; i < _nSamples; ++i)
-			jpmf.setSample(i, getSample(i));
+		jpmf._nSamples = _nSamples;
+		if( _samples instanceof CopyOnWriteSampleStore )
+			jpmf._samples = ((CopyOnWriteSampleStore)_samples).copyIt();
+		else
+			jpmf._samples = new CopyOnWriteSampleStore(_samples);
+		jpmf._sampleStorage = _sampleStorage;
+		jpmf._samplingScheme = _samplingScheme;
+		jpmf._haltonSequence = _haltonSequence;
+		jpmf._sampleIndex = _sampleIndex;
+		jpmf._useSampleIndex = _useSampleIndex;
+		jpmf._marginalAvailabilities.setCapacity(_marginalAvailabilities.getCapacity());
+		jpmf._bombingStrategies = _bombingStrategies;
+		jpmf._bombsProbDistribution = _bombsProbDistribution;
+		jpmf._bombsAliasTable = _bombsAliasTable;
+		jpmf._probabilitiesToExplode = _probabilitiesToExplode;
+		jpmf._nBombsToThrow = _nBombsToThrow;
+		jpmf._confidenceLevel = _confidenceLevel;
+		jpmf._seed = _seed;
+		jpmf._masterGenerator = _masterGenerator.split();				//The copy keeps the type of the generator
+		jpmf._numberOfThreads = _numberOfThreads;
+		jpmf._forkJoinPool = _forkJoinPool;						//The pool is shared but owned by this object
+		jpmf._parallelQueryThreshold = _parallelQueryThreshold;
+		jpmf._metrics = _metrics;
+		jpmf._isLazy = _isLazy;
 		return jpmf;
 	}
 	
@@ -74,6 +116,7 @@ public class JointProbabilityMass
 	 * of bombs as several bombs of the same type might be thrown.
 	 * @param numberOfBombs - number of "bombs"
 	 */
+	@Override
 	public void setNumberOfBombsToThrow(int numberOfBombs)
 	{
 		_nBombsToThrow = numberOfBombs;
@@ -86,7 +129,188 @@ public class JointProbabilityMass
 	public void setNumberOfSamples(int numberOfSamples)
 	{
 		_nSamples = numberOfSamples;
-		_samples = new double[_nSamples][_numberOfRandomVars];
+		_samples = createSampleStore(_nSamples);
+		_staleBlocks = null;
+		invalidate();
+	}
+	
+	/**
+	 * The method sets the storage layout of samples. Samples generated so far are discarded.
+	 * @param storage - the storage layout
+	 */
+	public void setSampleStorage(SampleStorage storage)
+	{
+		_sampleStorage = storage;
+		_samples = createSampleStore(_nSamples);
+		_staleBlocks = null;
+		invalidate();
+	}
+	
+	/**
+	 * The method sets the scheme of drawing epicenters and types of bombs. Samples generated so far are kept.
+	 * @param samplingScheme - the sampling scheme
+	 */
+	public void setSamplingScheme(SamplingScheme samplingScheme)
+	{
+		_samplingScheme = samplingScheme;
+		_haltonSequence = null;
+	}
+	
+	/**
+	 * The method saves samples and the metadata of the jpmf (graph size, bombing configuration and the seed) to a
+	 * binary file which can be loaded using loadSamples(...). Bombing strategies themselves are not saved. The seed
+	 * is informational only, it does not reproduce samples generated after several updates or by a generator set up
+	 * using setRandomGenerator(...). The file may be the one samples of the jpmf were loaded from.
+	 * @param fileName - a name of the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void saveSamples(String fileName) throws IOException
+	{
+		_logger.debug("->saveSamples(" + fileName + ")");
+		ensureSamples();
+		MappedSampleStore.write(fileName, _samples, _nSamples, _nBombsToThrow, _seed, _bombsProbDistribution);
+		_logger.debug("<-saveSamples(" + fileName + ")");
+	}
+	
+	/**
+	 * The method loads samples from a file written by saveSamples(...). The file is memory-mapped, i.e., samples are
+	 * not copied to the heap and can be shared by several processes. Samples overwritten by setSample(...) are kept
+	 * on the heap. The seed and the random number generator of the jpmf are not changed.
+	 * @param fileName - a name of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	public void loadSamples(String fileName) throws IOException
+	{
+		_logger.debug("->loadSamples(" + fileName + ")");
+		MappedSampleStore samples = new MappedSampleStore(fileName);
+		if( samples.getNumberOfRandomVars() != _numberOfRandomVars ) 
+			throw new RuntimeException("The file contains samples of " + samples.getNumberOfRandomVars() + " RVs instead of " + _numberOfRandomVars);
+		
+		if( _bombsProbDistribution != null && !_bombsProbDistribution.equals(samples.getBombsProbDistribution()) )
+			_logger.warn("Samples were generated with a different probability distribution over bombs: " + samples.getBombsProbDistribution());
+		
+		_samples = samples;
+		_staleBlocks = null;
+		_nSamples = samples.getNumberOfSamples();
+		_nBombsToThrow = samples.getNumberOfBombsToThrow();
+		invalidate();
+		_logger.debug("<-loadSamples(" + fileName + ")");
+	}
+	
+	/**
+	 * The method creates an empty storage of samples of the configured layout.
+	 * @param numberOfSamples - the number of samples
+	 * @return a sample store
+	 */
+	private ISampleStore createSampleStore(int numberOfSamples)
+	{
+		switch( _sampleStorage )
+		{
+			case DENSE:		return new DenseSampleStore(numberOfSamples, _numberOfRandomVars);
+			case QUANTIZED:	return new QuantizedSampleStore(numberOfSamples, _numberOfRandomVars);
+			case SPARSE:	return new SparseSampleStore(numberOfSamples, _numberOfRandomVars);
+			case COLUMN_MAJOR:	return new ColumnMajorSampleStore(numberOfSamples, _numberOfRandomVars);
+			default:		throw new RuntimeException("Unsupported sample storage: " + _sampleStorage);
+		}
+	}
+	
+	/**
+	 * The method sets the seed of the master random number generator used for sampling. Every block of samples is
+	 * generated by its own generator split off the master one, so the sequence of generated jpmfs is reproducible for
+	 * a given seed independently of the number of threads used.
+	 * @param seed - a random seed
+	 */
+	public void setSeed(long seed)
+	{
+		_seed = seed;
+		_masterGenerator = new SplittableRandomGenerator(seed);
+	}
+	
+	/**
+	 * The method sets the master random number generator used for sampling (e.g., a seeded XoroshiroRandomGenerator or
+	 * CounterBasedRandomGenerator). Generators of blocks of samples are split off this generator.
+	 * @param generator - a random number generator
+	 */
+	public void setRandomGenerator(IRandomGenerator generator)
+	{
+		_masterGenerator = generator;
+	}
+	
+	/**
+	 * The method returns the seed passed to setSeed(...).
+	 * @return the seed
+	 */
+	public long getSeed()
+	{
+		return _seed;
+	}
+	
+	/**
+	 * The method sets the number of threads used to generate samples. The pool of threads previously created by this
+	 * object is shut down; copies sharing it generate samples sequentially until their number of threads is set.
+	 * @param numberOfThreads - the number of threads (1 for sequential generation)
+	 */
+	public void setNumberOfThreads(int numberOfThreads)
+	{
+		if( numberOfThreads < 1 ) throw new RuntimeException("The number of threads should be positive: " + numberOfThreads);
+		
+		if( _forkJoinPool != null && _isForkJoinPoolOwner )
+			_forkJoinPool.shutdown();
+		
+		_numberOfThreads = numberOfThreads;
+		_forkJoinPool = numberOfThreads > 1 ? new ForkJoinPool(numberOfThreads) : null;
+		_isForkJoinPoolOwner = _forkJoinPool != null;
+	}
+	
+	/**
+	 * The method returns the pool of sampling threads.
+	 * @return the pool of sampling threads or null if samples should be generated sequentially (also if the pool shared
+	 * with the object this one was copied from is shut down)
+	 */
+	private ForkJoinPool getForkJoinPool()
+	{
+		ForkJoinPool forkJoinPool = _forkJoinPool;
+		return forkJoinPool != null && !forkJoinPool.isShutdown() ? forkJoinPool : null;
+	}
+	
+	/**
+	 * The method sets the number of samples starting from which marginal probabilities are evaluated in parallel. The
+	 * range of samples is then split into chunks whose sums of availabilities and numbers of samples satisfying the
+	 * conditioning are reduced by fork-join workers. The sampling threads are used if more than one thread is set up,
+	 * the common pool otherwise. The result depends on the threshold but not on the number of threads.
+	 * @param parallelQueryThreshold - the min number of samples for parallel evaluation (Integer.MAX_VALUE to disable)
+	 */
+	public void setParallelQueryThreshold(int parallelQueryThreshold)
+	{
+		if( parallelQueryThreshold < 0 ) throw new RuntimeException("The threshold should be non-negative: " + parallelQueryThreshold);
+		
+		_parallelQueryThreshold = parallelQueryThreshold;
+	}
+	
+	/**
+	 * The method switches lazy generation of samples on or off. In the lazy mode update() only marks samples as stale;
+	 * a block of samples is generated when one of its samples is accessed, all stale samples are generated by the
+	 * first query which needs all of them (e.g., a marginal probability which is not cached). Stale blocks keep the
+	 * configuration of bombing (bombs, the number of bombs and the sampling scheme with its Halton sequence) captured
+	 * by update(), so later changes of the configuration apply to the next update only, and estimators which do not
+	 * store samples (streaming and importance sampling) do not change the state used to generate them, i.e., lazily
+	 * generated samples are the same as eagerly generated ones.
+	 * @param isLazy - true if samples should be generated on demand
+	 */
+	public void setLazyGeneration(boolean isLazy)
+	{
+		if( !isLazy )
+			ensureSamples();
+		_isLazy = isLazy;
+	}
+	
+	/**
+	 * The method sets the collector of metrics of generation of samples and evaluation of marginal probabilities.
+	 * @param metrics - sampling metrics (NoOpSamplingMetrics by default)
+	 */
+	public void setSamplingMetrics(ISamplingMetrics metrics)
+	{
+		_metrics = metrics;
 	}
 	
 	/**
@@ -94,12 +318,24 @@ public class JointProbabilityMass
 	 * @param bombingStrategies - a list of bombing strategies
 	 * @param probDistribution - probability distribution
 	 */
+	@Override
 	public void setBombs(List<IBombingStrategy> bombingStrategies, List<Double> probDistribution)
 	{
 		if( bombingStrategies.size() != probDistribution.size() ) throw new RuntimeException("Dimension mismatch");
 		
 		_bombingStrategies = bombingStrategies;
 		_bombsProbDistribution = probDistribution;
+		_bombsAliasTable = new AliasTable(probDistribution);
+		
+		_probabilitiesToExplode = null;								//Null if every bomb always explodes
+		for(int i = 0; i < bombingStrategies.size(); ++i)
+			if( bombingStrategies.get(i).getProbabilityToExplode() < 1. )
+			{
+				_probabilitiesToExplode = new double[bombingStrategies.size()];
+				for(int j = 0; j < bombingStrategies.size(); ++j)
+					_probabilitiesToExplode[j] = bombingStrategies.get(j).getProbabilityToExplode();
+				break;
+			}
 	}
 	
 	/**
@@ -109,139 +345,556 @@ public class JointProbabilityMass
 	 * @param realizationsOfRVs realized values of conditioningRVs
 	 * @return a marginal probability
 	 */
+	@Override
 	public double getMarginalProbability(List<Integer> bundle, List<Integer> conditioningRVs, List<Double> realizationsOfRVs)
 	{
-		//if(_marginalAvailabilities.containsKey(bundle))
-		//{
-			//_logger.debug("The marginal prob. for the bundle: " + bundle.toString() + " already exists: " + _marginalAvailabilities.get(bundle));
-		//	return _marginalAvailabilities.get(bundle);
-		//}
-
+		return getMarginalProbability( compileQuery(bundle, conditioningRVs, realizationsOfRVs) );
+	}
+	
+	/**
+	 * The method compiles a marginal probability query, so that it can be evaluated repeatedly without resolving
+	 * the bundle and conditioning RVs again.
+	 * @param bundle a bundle
+	 * @param conditioningRVs a list of realized random variables
+	 * @param realizationsOfRVs realized values of conditioningRVs
+	 * @return the compiled query
+	 */
+	public MarginalQuery compileQuery(List<Integer> bundle, List<Integer> conditioningRVs, List<Double> realizationsOfRVs)
+	{
+		return new MarginalQuery(bundle, conditioningRVs, realizationsOfRVs, _numberOfRandomVars);
+	}
+	
+	/**
+	 * The method returns a marginal probability of a bundle of nodes to be available. Marginal probabilities are
+	 * cached until the samples change.
+	 * @param query a compiled query
+	 * @return a marginal probability
+	 */
+	public double getMarginalProbability(MarginalQuery query)
+	{
+		Double cachedProbability = _marginalAvailabilities.get(query);
+		_metrics.cacheAccessed(query, cachedProbability != null);
+		if( cachedProbability != null )
+			return cachedProbability;
+		
+		long generation = _marginalAvailabilities.getGeneration();
+		double marginalProbability = computeMarginalProbability(query);
+		_marginalAvailabilities.put(query, marginalProbability, generation);
+		return marginalProbability;
+	}
+	
+	/**
+	 * The method computes a marginal probability of a bundle of nodes to be available.
+	 * @param query a compiled query
+	 * @return a marginal probability
+	 */
+	private double computeMarginalProbability(MarginalQuery query)
+	{
+		ensureSamples();
+		long startTime = System.nanoTime();
 		double marginalProbability = 0.;
 		int numberOfSamples = 0;
-		for(int i = 0; i < _nSamples; ++i)
+		if( _useSampleIndex && query.isConditional() )						//Only samples matching the conditioning are visited
 		{
-			final int sampleIdx = i;
-			
-			List<Double> availabilitiesofGoodsInBundle = new ArrayList<Double>();
-			for(int j = 0; j < _numberOfRandomVars; ++j)
+			BitSet matchingSamples = getSampleIndex().getMatchingSamples(query);
+			for(int i = matchingSamples.nextSetBit(0); i >= 0; i = matchingSamples.nextSetBit(i+1))
 			{
-				int goodId = j+1;
-				if(bundle.contains(goodId))
-					availabilitiesofGoodsInBundle.add( _samples[sampleIdx][goodId-1] );
+				marginalProbability += query.computeAvailability(_samples, i);
+				numberOfSamples += 1;
 			}
-			
-			double minAvailability = Double.MAX_VALUE;
-			for(Double a : availabilitiesofGoodsInBundle )
-				if( a < minAvailability)
-					minAvailability = a;
-				
-			//double minAvailability = IntStream.range(0, _numberOfRandomVars).boxed()		//Equivalent to the lines above but the performance is lower
-			//		.map(j -> j+1).filter( gId ->  bundle.contains( gId ))
-			//		.map( gId -> _samples[sampleIdx][gId-1] )
-			//		.min( (x1, x2) -> x1.compareTo(x2) ).get();
-
-			boolean isConditioningSatisfied = true;
-			if(conditioningRVs != null && realizationsOfRVs != null)
+		}
+		else
+		{
+			double[] sums = accumulateMarginals(new MarginalQuery[]{query});
+			marginalProbability = sums[0];
+			numberOfSamples = (int)sums[1];
+		}
+		_metrics.marginalsEvaluated(new MarginalQuery[]{query}, _nSamples, numberOfSamples, System.nanoTime() - startTime);
+		
+		if( numberOfSamples == 0 )
+			_logger.warn("No samples satisfy the conditioning of " + query + ", consider estimateConditionalMarginalProbability(...)");
+		return numberOfSamples > 0 ? marginalProbability / numberOfSamples : Double.NaN;
+	}
+	
+	/**
+	 * The method returns marginal probabilities of several bundles to be available given the same conditioning. All
+	 * bundles which are not cached are evaluated within a single pass over the samples, which is sharded across
+	 * fork-join workers if the number of samples reaches the parallel query threshold.
+	 * @param bundles a list of bundles
+	 * @param conditioningRVs a list of realized random variables
+	 * @param realizationsOfRVs realized values of conditioningRVs
+	 * @return marginal probabilities of the bundles (in the same order)
+	 */
+	@Override
+	public List<Double> getMarginalProbabilities(List<List<Integer>> bundles, List<Integer> conditioningRVs, List<Double> realizationsOfRVs)
+	{
+		List<Double> marginalProbabilities = new ArrayList<Double>(bundles.size());
+		List<MarginalQuery> missingQueries = new ArrayList<MarginalQuery>();
+		for(List<Integer> bundle : bundles)
+		{
+			MarginalQuery query = compileQuery(bundle, conditioningRVs, realizationsOfRVs);
+			Double cachedProbability = _marginalAvailabilities.get(query);
+			_metrics.cacheAccessed(query, cachedProbability != null);
+			marginalProbabilities.add(cachedProbability);
+			if( cachedProbability == null )
+				missingQueries.add(query);
+		}
+		if( missingQueries.isEmpty() )
+			return marginalProbabilities;
+		
+		ensureSamples();
+		long startTime = System.nanoTime();
+		long generation = _marginalAvailabilities.getGeneration();
+		MarginalQuery[] queries = missingQueries.toArray(new MarginalQuery[missingQueries.size()]);
+		double[] sums;
+		if( _useSampleIndex && queries[0].isConditional() )
+			sums = MarginalsWorker.accumulateMarginals(_samples, queries, getSampleIndex().getMatchingSamples(queries[0]));
+		else
+			sums = accumulateMarginals(queries);
+		
+		double numberOfSamples = sums[queries.length];
+		_metrics.marginalsEvaluated(queries, _nSamples, (int)numberOfSamples, System.nanoTime() - startTime);
+		if( numberOfSamples == 0 )
+			_logger.warn("No samples satisfy the conditioning of " + queries[0] + ", consider estimateConditionalMarginalProbability(...)");
+		for(int b = 0, q = 0; b < marginalProbabilities.size(); ++b)
+			if( marginalProbabilities.get(b) == null )
 			{
-				for(int j = 0; j < conditioningRVs.size(); ++j)
-					if( _samples[sampleIdx][conditioningRVs.get(j) - 1] != realizationsOfRVs.get(j) )
-					{
-						isConditioningSatisfied = false;
-						break;
-					}
-				//isConditioningSatisfied = IntStream.range(0, conditioningRVs.size()).boxed()
-				//		.filter( j -> _samples[sampleIdx][conditioningRVs.get(j) - 1] != realizationsOfRVs.get(j))
-				//		.count() > 0 ? false : true;
+				double marginalProbability = numberOfSamples > 0 ? sums[q] / numberOfSamples : Double.NaN;
+				_marginalAvailabilities.put(queries[q++], marginalProbability, generation);
+				marginalProbabilities.set(b, marginalProbability);
 			}
+		return marginalProbabilities;
+	}
+	
+	/**
+	 * The method accumulates availabilities of bundles over all samples. The samples are sharded across fork-join
+	 * workers if their number reaches the parallel query threshold. All queries should have the same conditioning.
+	 * @param queries compiled queries
+	 * @return sums of availabilities of the bundles followed by the number of samples satisfying the conditioning
+	 */
+	private double[] accumulateMarginals(MarginalQuery[] queries)
+	{
+		if( _nSamples < _parallelQueryThreshold )
+			return MarginalsWorker.accumulateMarginals(_samples, queries, 0, _nSamples);
+		
+		ForkJoinPool pool = getForkJoinPool();
+		if( pool == null )
+			pool = ForkJoinPool.commonPool();
+		return pool.invoke(new MarginalsWorker(_samples, queries, 0, _nSamples));
+	}
+	
+	/**
+	 * The method estimates a marginal probability of a bundle of nodes to be available with the requested precision
+	 * without changing samples of the jpmf (see estimateMarginalProbability(..., appendSamples)).
+	 * @param bundle a bundle
+	 * @param conditioningRVs a list of realized random variables
+	 * @param realizationsOfRVs realized values of conditioningRVs
+	 * @param targetHalfWidth the requested half-width of the confidence interval
+	 * @param maxNumberOfSamples the max number of samples used for the estimate
+	 * @return the estimate of the marginal probability with its achieved precision
+	 */
+	public MarginalEstimate estimateMarginalProbability(List<Integer> bundle, List<Integer> conditioningRVs, List<Double> realizationsOfRVs, double targetHalfWidth, int maxNumberOfSamples)
+	{
+		return estimateMarginalProbability(bundle, conditioningRVs, realizationsOfRVs, targetHalfWidth, maxNumberOfSamples, false);
+	}
+	
+	/**
+	 * The method estimates a marginal probability of a bundle of nodes to be available with the requested precision.
+	 * Existing samples are used first. While the half-width of the confidence interval of the estimate is larger than
+	 * the requested one, new samples are generated block by block, and running mean and variance of availabilities
+	 * (Welford's algorithm) are updated with them. New samples are either discarded after they were used, or appended
+	 * to samples of the jpmf, whose number then grows up to maxNumberOfSamples. The confidence interval assumes i.i.d.
+	 * samples, so only the MONTE_CARLO sampling scheme is supported.
+	 * @param bundle a bundle
+	 * @param conditioningRVs a list of realized random variables
+	 * @param realizationsOfRVs realized values of conditioningRVs
+	 * @param targetHalfWidth the requested half-width of the confidence interval
+	 * @param maxNumberOfSamples the max number of samples used for the estimate
+	 * @param appendSamples true if new samples should be kept by the jpmf and false otherwise
+	 * @return the estimate of the marginal probability with its achieved precision
+	 */
+	public MarginalEstimate estimateMarginalProbability(List<Integer> bundle, List<Integer> conditioningRVs, List<Double> realizationsOfRVs, double targetHalfWidth, int maxNumberOfSamples, boolean appendSamples)
+	{
+		if( targetHalfWidth <= 0 ) throw new RuntimeException("The half-width should be positive: " + targetHalfWidth);
+		if( _samplingScheme != SamplingScheme.MONTE_CARLO ) throw new RuntimeException("Confidence intervals require i.i.d. samples, not supported for " + _samplingScheme);
+		
+		ensureSamples();
+		long startTime = System.nanoTime();
+		MarginalQuery[] queries = new MarginalQuery[]{ compileQuery(bundle, conditioningRVs, realizationsOfRVs) };
+		double z = new NormalDistribution(0., 1.).inverseCumulativeProbability( (1. + _confidenceLevel) / 2. );
+		
+		double[] statistics = StreamingWorker.computeStatistics(queries, _samples, 0, _nSamples);	//Welford's running statistics of availabilities
+		int nSamples = _nSamples;
+		double halfWidth = Double.POSITIVE_INFINITY;
+		while( true )
+		{
+			double count = statistics[0];
+			halfWidth = count > 1 ? z * Math.sqrt(statistics[2] / (count - 1) / count) : Double.POSITIVE_INFINITY;
+			if( halfWidth <= targetHalfWidth || nSamples >= maxNumberOfSamples )
+				break;
 			
-			if(isConditioningSatisfied)
+			int nSamplesToAppend = _samplesPerBlock;				//The half-width decreases as 1/sqrt(#samples)
+			if( count > 1 && halfWidth < Double.POSITIVE_INFINITY )
+				nSamplesToAppend = (int)Math.min(nSamples, Math.ceil(nSamples * (halfWidth * halfWidth / targetHalfWidth / targetHalfWidth - 1.)));
+			nSamplesToAppend = Math.max(_samplesPerBlock, (nSamplesToAppend + _samplesPerBlock - 1) / _samplesPerBlock * _samplesPerBlock);
+			nSamplesToAppend = Math.min(nSamplesToAppend, maxNumberOfSamples - nSamples);
+			if( appendSamples )
 			{
-				marginalProbability += minAvailability;
-				numberOfSamples += 1;
+				appendSamples(nSamplesToAppend);
+				statistics = StreamingWorker.mergeStatistics(statistics, StreamingWorker.computeStatistics(queries, _samples, nSamples, _nSamples));
 			}
+			else
+				statistics = StreamingWorker.mergeStatistics(statistics, streamStatistics(queries, nSamplesToAppend, null));
+			nSamples += nSamplesToAppend;
+		}
+		
+		_metrics.marginalsEvaluated(queries, nSamples, (int)statistics[0], System.nanoTime() - startTime);
+		_logger.debug("Estimated marginal probability: " + statistics[1] + " +/- " + halfWidth + " using " + nSamples + " samples.");
+		return new MarginalEstimate(statistics[0] > 0 ? statistics[1] : Double.NaN, halfWidth, (int)statistics[0]);
+	}
+	
+	/**
+	 * The method generates new samples and appends them to the existing ones. The storage of samples grows at least
+	 * twice when its capacity is exceeded.
+	 * @param numberOfSamples - the number of samples to be appended
+	 */
+	private void appendSamples(int numberOfSamples)
+	{
+		if( _nSamples + numberOfSamples > _samples.getNumberOfSamples() )
+		{
+			ISampleStore samples = createSampleStore( (int)Math.min(Integer.MAX_VALUE, Math.max(_nSamples + numberOfSamples, 2L * _samples.getNumberOfSamples())) );
+			for(int i = 0; i < _nSamples; ++i)
+				samples.setSample(i, _samples.getSample(i));
+			_samples = samples;
+		}
+		
+		int fromSample = _nSamples;
+		_nSamples += numberOfSamples;
+		generateSamples(fromSample, _nSamples);
+		invalidate();
+	}
+	
+	/**
+	 * The method estimates marginal probabilities of several bundles of nodes to be available without storing
+	 * samples. Samples are generated block by block into small work storages, folded into per-bundle running
+	 * statistics and discarded, i.e., memory does not depend on the number of samples. Samples of the jpmf are not
+	 * changed. Running statistics of blocks are merged along a fixed binary tree of blocks, so that estimates do not
+	 * depend on the number of threads.
+	 * @param bundles a list of bundles
+	 * @param conditioningRVs a list of realized random variables (common for all bundles)
+	 * @param realizationsOfRVs realized values of conditioningRVs
+	 * @param numberOfSamples the number of samples to be generated
+	 * @return estimates of marginal probabilities of bundles (in the same order as bundles)
+	 */
+	public List<MarginalEstimate> streamMarginalProbabilities(List<List<Integer>> bundles, List<Integer> conditioningRVs, List<Double> realizationsOfRVs, int numberOfSamples)
+	{
+		if( bundles.isEmpty() )
+			return new ArrayList<MarginalEstimate>();
+		
+		MarginalQuery[] queries = new MarginalQuery[bundles.size()];
+		for(int b = 0; b < bundles.size(); ++b)
+			queries[b] = compileQuery(bundles.get(b), conditioningRVs, realizationsOfRVs);
+		
+		HaltonSequence haltonSequence = null;								//The sequence of stored samples is kept
+		if( _samplingScheme == SamplingScheme.QUASI_MONTE_CARLO )
+			haltonSequence = new HaltonSequence(2 * _nBombsToThrow, _masterGenerator);
+		
+		long startTime = System.nanoTime();
+		double[] statistics = streamStatistics(queries, numberOfSamples, haltonSequence);
+		_metrics.marginalsEvaluated(queries, numberOfSamples, (int)statistics[0], System.nanoTime() - startTime);
+		
+		double z = new NormalDistribution(0., 1.).inverseCumulativeProbability( (1. + _confidenceLevel) / 2. );
+		double count = statistics[0];
+		List<MarginalEstimate> estimates = new ArrayList<MarginalEstimate>(queries.length);
+		for(int b = 0; b < queries.length; ++b)
+		{
+			double halfWidth = count > 1 ? z * Math.sqrt(statistics[2 + 2 * b] / (count - 1) / count) : Double.POSITIVE_INFINITY;
+			estimates.add(new MarginalEstimate(count > 0 ? statistics[1 + 2 * b] : Double.NaN, halfWidth, (int)count));
 		}
-		//_marginalAvailabilities.put(bundle, marginalProbability / _nSamples);
-		return marginalProbability / numberOfSamples;
+		return estimates;
 	}
 	
 	/**
-	 * The method returns a random sample.
+	 * The method generates samples block by block without storing them and computes running statistics of
+	 * availabilities of bundles over them.
+	 * @param queries - compiled queries with the same conditioning
+	 * @param numberOfSamples - the number of samples to be generated
+	 * @param haltonSequence - the low-discrepancy sequence of the QUASI_MONTE_CARLO scheme
+	 * @return statistics of availabilities (see StreamingWorker.computeStatistics(...))
+	 */
+	private double[] streamStatistics(MarginalQuery[] queries, int numberOfSamples, HaltonSequence haltonSequence)
+	{
+		long startTime = System.nanoTime();
+		int nBlocks = (numberOfSamples + _samplesPerBlock - 1) / _samplesPerBlock;
+		LongAdder nExplodedBombs = new LongAdder();
+		StreamingWorker worker = new StreamingWorker(createSampleGenerator(haltonSequence), _sampleStorage == SampleStorage.SPARSE, _numberOfRandomVars, 
+													 queries, numberOfSamples, 0, nBlocks, _masterGenerator.split(), nExplodedBombs);
+		ForkJoinPool forkJoinPool = getForkJoinPool();
+		double[] statistics = nBlocks == 0 ? new double[1 + 2 * queries.length] : forkJoinPool != null ? forkJoinPool.invoke(worker) : worker.compute();
+		_metrics.samplesGenerated(numberOfSamples, nExplodedBombs.sum(), System.nanoTime() - startTime);
+		return statistics;
+	}
+	
+	/**
+	 * The method estimates a conditional marginal probability of a bundle using importance sampling. Epicenters and
+	 * types of bombs are drawn from a proposal distribution which never lets a bomb explode at nodes affecting RVs
+	 * conditioned to be fully available and boosts bombs affecting RVs conditioned to be damaged, so that about one
+	 * bomb per damaged RV hits it (nodes affected by a bomb are given by IBombingStrategy.getAffectedNodes();
+	 * strategies which do not report them are not biased). Every sample is weighted by its likelihood ratio and the estimate is the weighted mean of
+	 * availabilities of samples satisfying the conditioning. Samples are not stored and samples of the jpmf are not
+	 * changed. Epicenters are always drawn using plain Monte Carlo sampling.
+	 * @param bundle a bundle
+	 * @param conditioningRVs a list of realized random variables
+	 * @param realizationsOfRVs realized values of conditioningRVs
+	 * @param numberOfSamples the number of weighted samples to be generated
+	 * @return the estimate of the marginal probability with its precision and the effective sample size
+	 */
+	public MarginalEstimate estimateConditionalMarginalProbability(List<Integer> bundle, List<Integer> conditioningRVs, List<Double> realizationsOfRVs, int numberOfSamples)
+	{
+		MarginalQuery query = compileQuery(bundle, conditioningRVs, realizationsOfRVs);
+		ImportanceSampler sampler = new ImportanceSampler(query, _numberOfRandomVars, _bombingStrategies, _bombsProbDistribution, _probabilitiesToExplode, _nBombsToThrow);
+		if( !sampler.isFeasible() )
+		{
+			_logger.warn("The conditioning of " + query + " cannot be satisfied by any bomb.");
+			return new MarginalEstimate(Double.NaN, Double.POSITIVE_INFINITY, 0, 0.);
+		}
+		
+		long startTime = System.nanoTime();
+		int nBlocks = (numberOfSamples + _samplesPerBlock - 1) / _samplesPerBlock;
+		ImportanceSamplingWorker worker = new ImportanceSamplingWorker(sampler, numberOfSamples, 0, nBlocks, _masterGenerator.split());
+		ForkJoinPool forkJoinPool = getForkJoinPool();
+		double[] sums = nBlocks == 0 ? new double[7] : forkJoinPool != null ? forkJoinPool.invoke(worker) : worker.compute();
+		long elapsedTime = System.nanoTime() - startTime;
+		_metrics.samplesGenerated(numberOfSamples, (long)sums[6], elapsedTime);
+		_metrics.marginalsEvaluated(new MarginalQuery[]{query}, numberOfSamples, (int)sums[0], elapsedTime);
+		
+		double z = new NormalDistribution(0., 1.).inverseCumulativeProbability( (1. + _confidenceLevel) / 2. );
+		return sampler.estimate(sums, z);
+	}
+	
+	/**
+	 * The method sets the confidence level of confidence intervals of estimates of marginal probabilities.
+	 * @param confidenceLevel - the confidence level, e.g., 0.95
+	 */
+	public void setConfidenceLevel(double confidenceLevel)
+	{
+		if( confidenceLevel <= 0 || confidenceLevel >= 1 ) throw new RuntimeException("The confidence level should be in (0, 1): " + confidenceLevel);
+		
+		_confidenceLevel = confidenceLevel;
+	}
+	
+	/**
+	 * The method enables the inverted index of samples for conditional queries. With the index, samples satisfying
+	 * the conditioning are found by intersecting bitmaps of realized levels of conditioning RVs, which pays off
+	 * when only a small fraction of samples satisfies the conditioning.
+	 * @param useSampleIndex true if the index should be used and false otherwise
+	 */
+	public void setUseSampleIndex(boolean useSampleIndex)
+	{
+		_useSampleIndex = useSampleIndex;
+	}
+	
+	/**
+	 * The method returns the index of samples creating it if needed.
+	 * @return the index of samples
+	 */
+	private SampleIndex getSampleIndex()
+	{
+		ensureSamples();
+		SampleIndex sampleIndex = _sampleIndex;
+		if( sampleIndex == null )
+		{
+			sampleIndex = new SampleIndex(_samples, _nSamples);
+			_sampleIndex = sampleIndex;
+		}
+		return sampleIndex;
+	}
+	
+	/**
+	 * The method sets the maximal number of marginal probabilities cached between updates of the jpmf.
+	 * @param capacity the capacity of the cache (0 disables caching)
+	 */
+	public void setCacheCapacity(int capacity)
+	{
+		_marginalAvailabilities.setCapacity(capacity);
+	}
+	
+	/**
+	 * The method returns the cache of marginal probabilities (e.g., to inspect its hit/miss counters).
+	 * @return the cache of marginal probabilities
+	 */
+	public MarginalProbabilityCache getMarginalProbabilityCache()
+	{
+		return _marginalAvailabilities;
+	}
+	
+	/**
+	 * The method returns a random sample. The sample is picked using a thread-local generator, i.e., picking does not
+	 * affect the master generator and samples generated by subsequent updates.
 	 * @return a random sample
 	 */
 	public double[] getSample()
 	{
-		int sampleIdx = (int)(Math.random() * _nSamples);
-		return _samples[sampleIdx];
+		int sampleIdx = ThreadLocalRandom.current().nextInt(_nSamples);
+		ensureSample(sampleIdx);
+		return _samples.getSample(sampleIdx);
 	}
 	
 	/**
 	 * The method returns a sample from the set of generated samples
 	 * @param sIdx an index of the sample
-	 * @return the sample corresponding to the specified index
+	 * @return the sample corresponding to the specified index (should not be modified, use setSample(...) instead)
 	 */
 	public double[] getSample(int sIdx)
 	{
-		return _samples[sIdx];
+		ensureSample(sIdx);
+		return _samples.getSample(sIdx);
 	}
 	
 	/**
-	 * The method set the sample
+	 * The method set the sample. Samples may be shared with copies of the jpmf or memory-mapped, so the sample is
+	 * stored privately by this object (copy-on-write) and the storage of generated samples is never written.
 	 * @param sIdx
 	 * @param sample
 	 */
 	public void setSample(int sIdx, double[] sample)
 	{
-		for(int i = 0; i < _numberOfRandomVars; ++i)
-			_samples[sIdx][i] = sample[i];
+		ensureSample(sIdx);
+		if( !(_samples instanceof CopyOnWriteSampleStore) )
+			_samples = new CopyOnWriteSampleStore(_samples);
+		_samples.setSample(sIdx, sample);
+		invalidate();
+	}
+	
+	/**
+	 * The method invalidates all data derived from samples (cached marginal probabilities and the index of samples).
+	 */
+	private void invalidate()
+	{
+		_marginalAvailabilities.invalidate();
+		_sampleIndex = null;
 	}
 	
 	/**
 	 * The method generates samples from the joint pmf using "bombing" algorithm (described in comments).
-	 * A sample is a state of every node in the graph after the specified number of bombs was thrown.
 	 */
 	private void generateSamples()
 	{
-		_logger.debug("->generateSamples()");
+		generateSamples(0, _nSamples);
+	}
+	
+	/**
+	 * The method generates the specified range of samples. A sample is a state of every node in the graph after the
+	 * specified number of bombs was thrown. Samples are split into blocks of _samplesPerBlock rows, each of which is
+	 * generated using its own generator.
+	 * @param fromSample - an index of the first sample to be generated
+	 * @param toSample - an index of the last sample to be generated (exclusive)
+	 */
+	private void generateSamples(int fromSample, int toSample)
+	{
+		_logger.debug("->generateSamples(" + fromSample + ", " + toSample + ")");
+		SampleBlocks blocks = drawBlocks(fromSample, toSample);
+		generateBlocks(blocks, 0, blocks.getNumberOfBlocks());
+		_logger.debug("<-generateSamples()");
+	}
+	
+	/**
+	 * The method draws generators of blocks of the specified range of samples.
+	 * @param fromSample - an index of the first sample to be generated
+	 * @param toSample - an index of the last sample to be generated (exclusive)
+	 * @return blocks of _samplesPerBlock samples to be generated
+	 */
+	private SampleBlocks drawBlocks(int fromSample, int toSample)
+	{
+		if( _samplingScheme == SamplingScheme.QUASI_MONTE_CARLO && (fromSample == 0 || _haltonSequence == null) )
+			_haltonSequence = new HaltonSequence(2 * _nBombsToThrow, _masterGenerator);	//Appended samples continue the sequence
+		
+		int nBlocks = (toSample - fromSample + _samplesPerBlock - 1) / _samplesPerBlock;
+		IRandomGenerator[] generators = new IRandomGenerator[nBlocks];
+		for(int b = 0; b < nBlocks; ++b)							//Seeds of blocks depend only on the master generator, not on threads
+			generators[b] = _masterGenerator.split();
+		return new SampleBlocks(_samples, fromSample, toSample, generators, createSampleGenerator(_haltonSequence));
+	}
+	
+	/**
+	 * The method creates a generator of samples using the current bombing configuration.
+	 * @param haltonSequence - the low-discrepancy sequence of the QUASI_MONTE_CARLO scheme
+	 * @return a generator of samples
+	 */
+	private SampleGenerator createSampleGenerator(HaltonSequence haltonSequence)
+	{
+		return new SampleGenerator(_numberOfRandomVars, _bombingStrategies, _bombsAliasTable, _probabilitiesToExplode, _nBombsToThrow, _samplingScheme, 
+								   _samplingScheme == SamplingScheme.QUASI_MONTE_CARLO ? haltonSequence : null);
+	}
+	
+	/**
+	 * The method generates the specified range of blocks of samples. Blocks which were already generated are skipped.
+	 * @param blocks - blocks of a range of samples
+	 * @param blockLow - an index of the first block to be generated
+	 * @param blockHigh - an index of the last block to be generated (exclusive)
+	 */
+	private void generateBlocks(SampleBlocks blocks, int blockLow, int blockHigh)
+	{
+		long startTime = System.nanoTime();
+		int nSamples = blocks.getNumberOfStaleSamples(blockLow, blockHigh);
+		
+		LongAdder nExplodedBombs = new LongAdder();
+		ForkJoinPool forkJoinPool = getForkJoinPool();
+		if( forkJoinPool != null && blockHigh - blockLow > 1 )
+			forkJoinPool.invoke(new SamplingWorker(blocks, blockLow, blockHigh, nExplodedBombs));
+		else
+			for(int b = blockLow; b < blockHigh; ++b)
+				nExplodedBombs.add( blocks.generateBlock(b) );
+		
+		_metrics.samplesGenerated(nSamples, nExplodedBombs.sum(), System.nanoTime() - startTime);
+	}
+	
+	/**
+	 * The method generates all stale samples (lazy mode).
+	 */
+	private void ensureSamples()
+	{
+		if( _staleBlocks == null )
+			return;
 		
-		for(int i = 0; i < _nSamples; ++i)							//TODO: parallelize this
+		synchronized(this)
 		{
-			double[] sample = new double[_numberOfRandomVars];		//Initialize states of every node in the dependency graph
-			for(int j = 0; j < _numberOfRandomVars; ++j)
-				sample[j] = 1;
-			
-			for(int j = 0; j < _nBombsToThrow; ++j)					//Throw the specified number of bombs into the dependency graph
-				sample = throwDeterministicBomb(sample);
-			
-			for(int j = 0; j < _numberOfRandomVars; ++j)			//Add the sample to the set of generated samples
-				_samples[i][j] = sample[j];
+			SampleBlocks blocks = _staleBlocks;
+			if( blocks != null )
+			{
+				generateBlocks(blocks, 0, blocks.getNumberOfBlocks());
+				_staleBlocks = null;
+			}
 		}
-		_logger.debug("<-generateSamples()");
 	}
 	
 	/**
-	 * The method throws a "bomb" into the grid
-	 * @param sample - a sample to be bombed
-	 * @return the sample after being bombed
+	 * The method generates the block of the sample if the sample is stale (lazy mode).
+	 * @param sIdx - an index of the sample
 	 */
-	private double[] throwDeterministicBomb(double[] sample)
+	private void ensureSample(int sIdx)
 	{
-		int nodeToBomb = (int)Math.floor(Math.random() * _numberOfRandomVars);				//Pick a random node uniformly
-
-		do
+		if( _staleBlocks == null )
+			return;
+		
+		synchronized(this)
 		{
-			int bombToThrow = (int)Math.floor(Math.random() * _bombingStrategies.size());	//Choose a bomb to be thrown according to the prob. of falling
-			double prob = Math.random();
-			if( prob <= _bombsProbDistribution.get(bombToThrow) )
-				return _bombingStrategies.get(bombToThrow).applyBomb(sample, nodeToBomb);
+			SampleBlocks blocks = _staleBlocks;
+			int blockIdx = sIdx / _samplesPerBlock;
+			if( blocks != null && blocks.isStale(blockIdx) )
+			{
+				generateBlocks(blocks, blockIdx, blockIdx + 1);
+				if( --_nStaleBlocks == 0 )
+					_staleBlocks = null;
+			}
 		}
-		while(true);
 	}
 	
 	/**
 	 * The method returns a list of bombing strategies used to generate the jpmf
 	 * @return a list of bombing strategies
 	 */
+	@Override
 	public List<IBombingStrategy> getBombs()
 	{
 		return _bombingStrategies;
@@ -249,11 +902,32 @@ public class JointProbabilityMass
 	
 	private int _numberOfRandomVars;						//The number of random variables (= #nodes in the dependency graph)
 	private Graph _dependencyGraph;							//Dependency graph of the spatial domain
-	private double[][] _samples;							//An array of _nSamples per every RV
-	private Map<List<Integer>, Double> _marginalAvailabilities;//Expected marginal availabilities of bundles
+	private ISampleStore _samples;							//Storage of _nSamples samples
+	private SampleStorage _sampleStorage = SampleStorage.DENSE;//Storage layout of samples
+	private SamplingScheme _samplingScheme = SamplingScheme.MONTE_CARLO;//Scheme of drawing epicenters and types of bombs
+	private HaltonSequence _haltonSequence;					//Low-discrepancy sequence of the QUASI_MONTE_CARLO scheme
+	private MarginalProbabilityCache _marginalAvailabilities;//Expected marginal availabilities of bundles
 	
 	private int _nSamples;									//Number of samples
+	private boolean _useSampleIndex;						//Whether conditional queries use the index of samples
+	private volatile SampleIndex _sampleIndex;				//Inverted index of samples (created on demand)
 	private List<IBombingStrategy> _bombingStrategies;		//Possible bombing strategies
 	private List<Double>		   _bombsProbDistribution;	//Probability distribution over possible bombing strategies
+	private AliasTable			   _bombsAliasTable;		//Alias table of the probability distribution over bombing strategies
+	private double[]			   _probabilitiesToExplode;	//Probabilities of bombing strategies to explode (null if all bombs explode)
 	private int _nBombsToThrow;								//Number of bombs to be used by the bombing algorithm
+	private double _confidenceLevel = 0.95;					//Confidence level of estimates of marginal probabilities
+	
+	private static final int _defaultCacheCapacity = 10000;	//Default capacity of the cache of marginal probabilities
+	static final int _samplesPerBlock = 256;				//Number of samples generated by a single generator
+	private long _seed;										//Seed of the master generator
+	private IRandomGenerator _masterGenerator;				//Master generator used to seed generators of blocks of samples
+	private int _numberOfThreads = 1;						//Number of threads used to generate samples
+	private ForkJoinPool _forkJoinPool;						//Pool of sampling threads shared with copies (null for sequential generation)
+	private boolean _isForkJoinPoolOwner;					//Whether the pool of sampling threads was created by this object
+	private int _parallelQueryThreshold = 1 << 16;			//Min number of samples for which marginal probabilities are evaluated in parallel
+	private ISamplingMetrics _metrics = new NoOpSamplingMetrics();//Collector of metrics of sampling and evaluation of marginals
+	private boolean _isLazy;								//Whether samples are generated on demand
+	private volatile SampleBlocks _staleBlocks;				//Stale blocks of samples (null if all samples are generated)
+	private int _nStaleBlocks;								//Number of stale blocks of samples
 }
@@ -0,0 +1,280 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The class implements a read-only sample storage backed by a memory-mapped binary file, so that several processes
+ * can share one set of samples without copying it to the heap. The file consists of a header (graph size, number of
+ * samples, bombing configuration and the seed) followed by samples stored row by row as little-endian doubles. The
+ * seed is informational only: it is the last seed set up for the jpmf, not the state of the generator which produced
+ * the samples, i.e., samples cannot be regenerated from it.
+ * @author Dmitry Moor
+ *
+ */
+public class MappedSampleStore implements ISampleStore
+{
+
+	/**
+	 * The constructor maps the specified sample file.
+	 * @param fileName - a name of the file written by write(...)
+	 * @throws IOException if the file cannot be read or has a wrong format
+	 */
+	public MappedSampleStore(String fileName) throws IOException
+	{
+		try( FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ) )
+		{
+			ByteBuffer header = ByteBuffer.allocate(_fixedHeaderSize).order(ByteOrder.LITTLE_ENDIAN);
+			readFully(channel, header, 0);
+			header.flip();
+			
+			if( header.getInt() != _magic )		throw new IOException("Not a sample file: " + fileName);
+			int version = header.getInt();
+			if( version != _version )			throw new IOException("Unsupported version of the sample file: " + version);
+			
+			_numberOfRandomVars = header.getInt();
+			_nSamples = header.getInt();
+			_nBombsToThrow = header.getInt();
+			_seed = header.getLong();
+			int nBombs = header.getInt();
+			
+			ByteBuffer probabilities = ByteBuffer.allocate(nBombs * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			readFully(channel, probabilities, _fixedHeaderSize);
+			probabilities.flip();
+			_bombsProbDistribution = new ArrayList<Double>(nBombs);
+			for(int i = 0; i < nBombs; ++i)
+				_bombsProbDistribution.add(probabilities.getDouble());
+			
+			long dataOffset = getDataOffset(nBombs);
+			long rowSize = (long)_numberOfRandomVars * Double.BYTES;
+			if( channel.size() < dataOffset + rowSize * _nSamples ) throw new IOException("Truncated sample file: " + fileName);
+			
+			_rowsPerRegion = (int)Math.max(1, Integer.MAX_VALUE / rowSize);		//A single mapping cannot exceed 2GB
+			int nRegions = (int)((_nSamples + (long)_rowsPerRegion - 1) / _rowsPerRegion);
+			_regions = new DoubleBuffer[nRegions];
+			for(int r = 0; r < nRegions; ++r)
+			{
+				long nRows = Math.min(_rowsPerRegion, _nSamples - (long)r * _rowsPerRegion);
+				_regions[r] = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + r * _rowsPerRegion * rowSize, nRows * rowSize)
+						.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+			}
+		}																		//Mappings remain valid after the channel is closed
+	}
+	
+	/**
+	 * The method writes samples and the metadata of the jpmf to a binary file. Samples are written to a temporary file
+	 * which then replaces the specified one, so that samples may be read from a mapping of the file being replaced.
+	 * @param fileName - a name of the file
+	 * @param samples - samples to be written
+	 * @param numberOfSamples - the number of samples to be written
+	 * @param nBombsToThrow - the number of bombs thrown per sample
+	 * @param seed - the seed of the jpmf (informational)
+	 * @param bombsProbDistribution - probability distribution over bombing strategies (or null)
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(String fileName, ISampleStore samples, int numberOfSamples, int nBombsToThrow, long seed, 
+			                 List<Double> bombsProbDistribution) throws IOException
+	{
+		int nBombs = bombsProbDistribution != null ? bombsProbDistribution.size() : 0;
+		int numberOfRandomVars = samples.getNumberOfRandomVars();
+		
+		Path path = Paths.get(fileName).toAbsolutePath();
+		Path temporaryPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+		try( FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE) )
+		{
+			ByteBuffer header = ByteBuffer.allocate((int)getDataOffset(nBombs)).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(_magic);
+			header.putInt(_version);
+			header.putInt(numberOfRandomVars);
+			header.putInt(numberOfSamples);
+			header.putInt(nBombsToThrow);
+			header.putLong(seed);
+			header.putInt(nBombs);
+			for(int i = 0; i < nBombs; ++i)
+				header.putDouble(bombsProbDistribution.get(i));
+			header.position(header.capacity());								//Samples are aligned to 8 bytes
+			header.flip();
+			writeFully(channel, header);
+			
+			int rowsPerBuffer = Math.max(1, _writeBufferSize / (numberOfRandomVars * Double.BYTES));
+			ByteBuffer buffer = ByteBuffer.allocate(rowsPerBuffer * numberOfRandomVars * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			for(int i = 0; i < numberOfSamples; ++i)
+			{
+				for(int j = 0; j < numberOfRandomVars; ++j)
+					buffer.putDouble(samples.getAvailability(i, j));
+				
+				if( !buffer.hasRemaining() || i == numberOfSamples - 1 )
+				{
+					buffer.flip();
+					writeFully(channel, buffer);
+					buffer.clear();
+				}
+			}
+			channel.close();
+			
+			try
+			{
+				Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch(AtomicMoveNotSupportedException e)
+			{
+				Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally
+		{
+			Files.deleteIfExists(temporaryPath);										//Only if the file was not moved
+		}
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getNumberOfSamples()
+	 */
+	@Override
+	public int getNumberOfSamples() 
+	{
+		return _nSamples;
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getNumberOfRandomVars()
+	 */
+	@Override
+	public int getNumberOfRandomVars() 
+	{
+		return _numberOfRandomVars;
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getAvailability(int, int)
+	 */
+	@Override
+	public double getAvailability(int sIdx, int rvIdx) 
+	{
+		return _regions[sIdx / _rowsPerRegion].get( (sIdx % _rowsPerRegion) * _numberOfRandomVars + rvIdx );
+	}
+
+	/**
+	 * The method returns a copy of the sample.
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getSample(int)
+	 */
+	@Override
+	public double[] getSample(int sIdx) 
+	{
+		DoubleBuffer region = _regions[sIdx / _rowsPerRegion].duplicate();		//Positions of shared buffers are not modified
+		region.position( (sIdx % _rowsPerRegion) * _numberOfRandomVars );
+		
+		double[] sample = new double[_numberOfRandomVars];
+		region.get(sample);
+		return sample;
+	}
+
+	/**
+	 * The storage is read-only.
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#setSample(int, double[])
+	 */
+	@Override
+	public void setSample(int sIdx, double[] sample) 
+	{
+		throw new RuntimeException("Memory-mapped samples are read-only");
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#computeAvailability(int, int[])
+	 */
+	@Override
+	public double computeAvailability(int sIdx, int[] bundle)
+	{
+		DoubleBuffer region = _regions[sIdx / _rowsPerRegion];
+		int offset = (sIdx % _rowsPerRegion) * _numberOfRandomVars;
+		
+		double minAvailability = Double.MAX_VALUE;
+		for(int k = 0; k < bundle.length; ++k)
+		{
+			double availability = region.get(offset + bundle[k]);
+			if( availability < minAvailability )
+				minAvailability = availability;
+		}
+		return minAvailability;
+	}
+	
+	/**
+	 * The method returns the number of bombs thrown per sample.
+	 * @return the number of bombs
+	 */
+	public int getNumberOfBombsToThrow()
+	{
+		return _nBombsToThrow;
+	}
+	
+	/**
+	 * The method returns the seed of the jpmf when samples were written. The seed is informational only, samples
+	 * cannot be regenerated from it.
+	 * @return the seed
+	 */
+	public long getSeed()
+	{
+		return _seed;
+	}
+	
+	/**
+	 * The method returns the probability distribution over bombing strategies used to generate samples.
+	 * @return probability distribution
+	 */
+	public List<Double> getBombsProbDistribution()
+	{
+		return _bombsProbDistribution;
+	}
+	
+	/**
+	 * The method returns the offset of samples in the file.
+	 * @param nBombs - the number of bombing strategies
+	 * @return the offset in bytes
+	 */
+	private static long getDataOffset(int nBombs)
+	{
+		long headerSize = _fixedHeaderSize + (long)nBombs * Double.BYTES;
+		return (headerSize + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+	}
+	
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+	{
+		while( buffer.hasRemaining() )
+			if( channel.read(buffer, position + buffer.position()) < 0 )
+				throw new IOException("Unexpected end of the sample file");
+	}
+	
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException
+	{
+		while( buffer.hasRemaining() )
+			channel.write(buffer);
+	}
+	
+	private static final int _magic = 0x4A504D46;				//"JPMF"
+	private static final int _version = 1;						//Version of the file format
+	private static final int _fixedHeaderSize = 32;				//magic, version, #RVs, #samples, #bombs to throw, seed, #bombs
+	private static final int _writeBufferSize = 1 << 20;		//Size of the buffer used to write samples
+	
+	private int _numberOfRandomVars;							//The number of RVs of every sample
+	private int _nSamples;										//Number of samples
+	private int _nBombsToThrow;									//Number of bombs thrown per sample
+	private long _seed;											//Seed of the jpmf which wrote samples (informational)
+	private List<Double> _bombsProbDistribution;				//Probability distribution over bombing strategies
+	private int _rowsPerRegion;									//Number of samples per mapped region
+	private DoubleBuffer[] _regions;							//Mapped regions of samples
+}
@@ -0,0 +1,90 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+/**
+ * The class represents an estimate of a marginal probability (expected availability) of a bundle together with its
+ * achieved precision, i.e., the half-width of the confidence interval around the estimate.
+ * @author Dmitry Moor
+ *
+ */
+public class MarginalEstimate 
+{
+
+	/**
+	 * A simple constructor.
+	 * @param value - the estimated marginal probability
+	 * @param halfWidth - the half-width of the confidence interval
+	 * @param numberOfSamples - the number of samples the estimate is based on
+	 */
+	public MarginalEstimate(double value, double halfWidth, int numberOfSamples)
+	{
+		this(value, halfWidth, numberOfSamples, numberOfSamples);
+	}
+	
+	/**
+	 * A constructor for estimates computed using weighted samples.
+	 * @param value - the estimated marginal probability
+	 * @param halfWidth - the half-width of the confidence interval
+	 * @param numberOfSamples - the number of samples the estimate is based on
+	 * @param effectiveSampleSize - the effective sample size of weighted samples
+	 */
+	public MarginalEstimate(double value, double halfWidth, int numberOfSamples, double effectiveSampleSize)
+	{
+		_value = value;
+		_halfWidth = halfWidth;
+		_numberOfSamples = numberOfSamples;
+		_effectiveSampleSize = effectiveSampleSize;
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return _value + " +/- " + _halfWidth + " (" + _numberOfSamples + " samples, ESS = " + _effectiveSampleSize + ")";
+	}
+	
+	/**
+	 * The method returns the estimated marginal probability.
+	 * @return the estimate (NaN if no sample satisfies the conditioning)
+	 */
+	public double getValue()
+	{
+		return _value;
+	}
+	
+	/**
+	 * The method returns the half-width of the confidence interval around the estimate.
+	 * @return the half-width (+infinity if there are not enough samples to estimate it)
+	 */
+	public double getHalfWidth()
+	{
+		return _halfWidth;
+	}
+	
+	/**
+	 * The method returns the number of samples the estimate is based on, i.e., the number of samples satisfying the
+	 * conditioning of the query.
+	 * @return the number of samples
+	 */
+	public int getNumberOfSamples()
+	{
+		return _numberOfSamples;
+	}
+	
+	/**
+	 * The method returns the effective sample size, i.e., (sum of weights)^2 / (sum of squared weights) of samples
+	 * the estimate is based on. For unweighted samples it is equal to the number of samples.
+	 * @return the effective sample size
+	 */
+	public double getEffectiveSampleSize()
+	{
+		return _effectiveSampleSize;
+	}
+	
+	private double _value;									//The estimated marginal probability
+	private double _halfWidth;								//The half-width of the confidence interval
+	private int _numberOfSamples;							//The number of samples the estimate is based on
+	private double _effectiveSampleSize;					//The effective sample size of (weighted) samples
+}
@@ -0,0 +1,209 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The class implements a bounded thread-safe cache of marginal probabilities of compiled queries with approximate LRU
+ * eviction. Lookups do not lock: every entry keeps the time of its last access, and when the cache grows beyond its
+ * capacity the least recently used entries are evicted in a batch by a single thread (concurrent insertions may
+ * exceed the capacity until the next eviction). Every invalidation starts a new generation of the cache, so that
+ * values computed for an outdated set of samples are never returned.
+ * @author Dmitry Moor
+ *
+ */
+public class MarginalProbabilityCache 
+{
+
+	/**
+	 * A simple constructor.
+	 * @param capacity - the maximal number of cached marginal probabilities (0 disables caching)
+	 */
+	public MarginalProbabilityCache(int capacity)
+	{
+		if( capacity < 0 ) throw new RuntimeException("Negative capacity: " + capacity);
+		
+		_capacity = capacity;
+		_entries = new ConcurrentHashMap<MarginalQuery, Entry>();
+	}
+	
+	/**
+	 * The method returns the cached marginal probability of the query.
+	 * @param query - a compiled query
+	 * @return the marginal probability or null if it is not cached
+	 */
+	public Double get(MarginalQuery query)
+	{
+		Entry entry = _entries.get(query);
+		if( entry == null || entry._generation != _generation )
+		{
+			_nMisses.increment();
+			return null;
+		}
+		
+		entry._lastAccess = System.nanoTime();
+		_nHits.increment();
+		return entry._marginalProbability;
+	}
+	
+	/**
+	 * The method caches the marginal probability of the query unless the cache was invalidated after the
+	 * probability was computed.
+	 * @param query - a compiled query
+	 * @param marginalProbability - the marginal probability of the query
+	 * @param generation - the generation of the cache when the computation started
+	 */
+	public void put(MarginalQuery query, double marginalProbability, long generation)
+	{
+		if( generation != _generation || _capacity == 0 )
+			return;
+		
+		_entries.put(query, new Entry(marginalProbability, generation));
+		if( _entries.size() > _capacity )
+			evict(false);
+	}
+	
+	/**
+	 * The method removes all cached marginal probabilities.
+	 */
+	public synchronized void invalidate()
+	{
+		_generation += 1;
+		_entries.clear();
+	}
+	
+	/**
+	 * The method returns the current generation of the cache.
+	 * @return the generation
+	 */
+	public long getGeneration()
+	{
+		return _generation;
+	}
+	
+	/**
+	 * The method sets the capacity of the cache evicting least recently used entries if needed.
+	 * @param capacity - the maximal number of cached marginal probabilities (0 disables caching)
+	 */
+	public void setCapacity(int capacity)
+	{
+		if( capacity < 0 ) throw new RuntimeException("Negative capacity: " + capacity);
+		
+		_capacity = capacity;
+		evict(true);
+	}
+	
+	/**
+	 * The method returns the capacity of the cache.
+	 * @return the maximal number of cached marginal probabilities
+	 */
+	public int getCapacity()
+	{
+		return _capacity;
+	}
+	
+	/**
+	 * The method returns the number of cached marginal probabilities.
+	 * @return the size of the cache
+	 */
+	public int size()
+	{
+		return _entries.size();
+	}
+	
+	/**
+	 * The method returns the number of cache hits.
+	 * @return the number of hits
+	 */
+	public long getNumberOfHits()
+	{
+		return _nHits.sum();
+	}
+	
+	/**
+	 * The method returns the number of cache misses.
+	 * @return the number of misses
+	 */
+	public long getNumberOfMisses()
+	{
+		return _nMisses.sum();
+	}
+	
+	/**
+	 * The method returns the fraction of lookups which were hits.
+	 * @return the hit ratio
+	 */
+	public double getHitRatio()
+	{
+		long nHits = _nHits.sum();
+		long nMisses = _nMisses.sum();
+		return nHits + nMisses > 0 ? (double)nHits / (nHits + nMisses) : 0.;
+	}
+	
+	/**
+	 * The method evicts least recently used entries, so that the cache shrinks by a batch of entries below its
+	 * capacity and the cost of sorting entries is shared by the following insertions.
+	 * @param isForced - true if the caller should wait for a concurrent eviction, false if it may skip eviction
+	 */
+	private void evict(boolean isForced)
+	{
+		if( !isForced && _isEvicting )
+			return;
+		
+		synchronized(this)
+		{
+			int capacity = _capacity;
+			if( _entries.size() <= capacity )
+				return;
+			
+			_isEvicting = true;
+			List<Map.Entry<MarginalQuery, Entry>> entries = new ArrayList<Map.Entry<MarginalQuery, Entry>>(_entries.entrySet());
+			Collections.sort(entries, new Comparator<Map.Entry<MarginalQuery, Entry>>() 
+			{
+				@Override
+				public int compare(Map.Entry<MarginalQuery, Entry> lhs, Map.Entry<MarginalQuery, Entry> rhs) 
+				{
+					return Long.compare(lhs.getValue()._lastAccess, rhs.getValue()._lastAccess);
+				}
+			});
+			
+			int nEntriesToKeep = capacity - capacity / _evictionBatchFraction;
+			for(int i = 0; i < entries.size() - nEntriesToKeep; ++i)
+				_entries.remove(entries.get(i).getKey(), entries.get(i).getValue());
+			_isEvicting = false;
+		}
+	}
+	
+	/**
+	 * A cached marginal probability.
+	 * @author Dmitry Moor
+	 *
+	 */
+	private static class Entry
+	{
+		public Entry(double marginalProbability, long generation)
+		{
+			_marginalProbability = marginalProbability;
+			_generation = generation;
+			_lastAccess = System.nanoTime();
+		}
+		
+		private final double _marginalProbability;			// The cached marginal probability
+		private final long _generation;						// The generation of the cache the probability belongs to
+		private volatile long _lastAccess;					// The time of the last access (approximate LRU order)
+	}
+	
+	private static final int _evictionBatchFraction = 16;	//1/16 of the capacity is freed by every eviction
+	
+	private volatile int _capacity;										//The maximal number of entries
+	private ConcurrentHashMap<MarginalQuery, Entry> _entries;			//Cached marginal probabilities
+	private volatile long _generation;									//Incremented on every invalidation (guarded by this)
+	private volatile boolean _isEvicting;								//Whether a thread is evicting entries
+	private LongAdder _nHits = new LongAdder();							//Number of cache hits
+	private LongAdder _nMisses = new LongAdder();						//Number of cache misses
+}
@@ -0,0 +1,196 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The class implements a compiled form of a marginal probability query to a joint probability mass function. Ids of
+ * goods of the bundle and of the conditioning random variables are resolved once into sorted arrays of (0-based)
+ * indices of random variables, so that the query can be evaluated without allocations.
+ * @author Dmitry Moor
+ *
+ */
+public class MarginalQuery 
+{
+
+	/**
+	 * The constructor compiles the query.
+	 * @param bundle - a bundle of goods (ids of goods start from 1)
+	 * @param conditioningRVs - a list of realized random variables (or null)
+	 * @param realizationsOfRVs - realized values of conditioningRVs (or null)
+	 * @param numberOfRandomVars - the number of random variables of the jpmf
+	 */
+	public MarginalQuery(List<Integer> bundle, List<Integer> conditioningRVs, List<Double> realizationsOfRVs, int numberOfRandomVars)
+	{
+		int[] bundleIndices = new int[bundle.size()];
+		int nGoods = 0;
+		for(Integer goodId : bundle)
+			if( goodId >= 1 && goodId <= numberOfRandomVars )				//Goods which are not RVs of the jpmf are ignored
+				bundleIndices[nGoods++] = goodId - 1;
+		
+		Arrays.sort(bundleIndices, 0, nGoods);
+		int nDistinct = 0;
+		for(int i = 0; i < nGoods; ++i)
+			if( nDistinct == 0 || bundleIndices[nDistinct-1] != bundleIndices[i] )
+				bundleIndices[nDistinct++] = bundleIndices[i];
+		_bundle = Arrays.copyOf(bundleIndices, nDistinct);
+		
+		if( conditioningRVs != null && realizationsOfRVs != null )
+		{
+			if( conditioningRVs.size() != realizationsOfRVs.size() ) throw new RuntimeException("Dimension mismatch");
+			
+			Integer[] order = new Integer[conditioningRVs.size()];			//Sort conditions by RVs to obtain a canonical form
+			for(int i = 0; i < order.length; ++i)
+				order[i] = i;
+			Arrays.sort(order, (i1, i2) -> conditioningRVs.get(i1).equals(conditioningRVs.get(i2)) 
+					? Double.compare(realizationsOfRVs.get(i1), realizationsOfRVs.get(i2))
+					: Integer.compare(conditioningRVs.get(i1), conditioningRVs.get(i2)) );
+			
+			int[] conditioningIndices = new int[order.length];
+			double[] realizations = new double[order.length];
+			int nConditions = 0;
+			for(int i = 0; i < order.length; ++i)
+			{
+				int rvIdx = conditioningRVs.get(order[i]) - 1;
+				double realization = realizationsOfRVs.get(order[i]);
+				if( rvIdx < 0 || rvIdx >= numberOfRandomVars ) throw new RuntimeException("No such RV: " + (rvIdx+1));
+				
+				if( nConditions > 0 && conditioningIndices[nConditions-1] == rvIdx && realizations[nConditions-1] == realization )
+					continue;
+				conditioningIndices[nConditions] = rvIdx;
+				realizations[nConditions++] = realization;
+			}
+			_conditioningRVs = Arrays.copyOf(conditioningIndices, nConditions);
+			_realizations = Arrays.copyOf(realizations, nConditions);
+		}
+		else
+		{
+			_conditioningRVs = new int[0];
+			_realizations = new double[0];
+		}
+	}
+	
+	/**
+	 * The method returns sorted indices of random variables of the bundle.
+	 * @return indices of RVs of the bundle
+	 */
+	public int[] getBundle()
+	{
+		return _bundle;
+	}
+	
+	/**
+	 * The method returns sorted indices of conditioning random variables.
+	 * @return indices of conditioning RVs
+	 */
+	public int[] getConditioningRVs()
+	{
+		return _conditioningRVs;
+	}
+	
+	/**
+	 * The method returns realizations of conditioning random variables.
+	 * @return realizations of conditioning RVs
+	 */
+	public double[] getRealizations()
+	{
+		return _realizations;
+	}
+	
+	/**
+	 * The method checks if the query is conditioned on any random variables.
+	 * @return true if the query has conditioning RVs and false otherwise
+	 */
+	public boolean isConditional()
+	{
+		return _conditioningRVs.length > 0;
+	}
+	
+	/**
+	 * The method checks if the sample satisfies the conditioning of the query.
+	 * @param sample - a sample of the jpmf
+	 * @return true if all conditioning RVs of the sample have the realized values
+	 */
+	public boolean isSatisfiedBy(double[] sample)
+	{
+		for(int k = 0; k < _conditioningRVs.length; ++k)
+			if( sample[_conditioningRVs[k]] != _realizations[k] )
+				return false;
+		return true;
+	}
+	
+	/**
+	 * The method computes the availability of the bundle in the sample, i.e., the minimal availability of its goods.
+	 * @param sample - a sample of the jpmf
+	 * @return the availability of the bundle (Double.MAX_VALUE for an empty bundle)
+	 */
+	public double computeAvailability(double[] sample)
+	{
+		double minAvailability = Double.MAX_VALUE;
+		for(int k = 0; k < _bundle.length; ++k)
+			if( sample[_bundle[k]] < minAvailability )
+				minAvailability = sample[_bundle[k]];
+		return minAvailability;
+	}
+	
+	/**
+	 * The method checks if the stored sample satisfies the conditioning of the query.
+	 * @param samples - samples of the jpmf
+	 * @param sIdx - an index of the sample
+	 * @return true if all conditioning RVs of the sample have the realized values
+	 */
+	public boolean isSatisfiedBy(ISampleStore samples, int sIdx)
+	{
+		return samples.isSatisfied(sIdx, _conditioningRVs, _realizations);
+	}
+	
+	/**
+	 * The method computes the availability of the bundle in the stored sample.
+	 * @param samples - samples of the jpmf
+	 * @param sIdx - an index of the sample
+	 * @return the availability of the bundle (Double.MAX_VALUE for an empty bundle)
+	 */
+	public double computeAvailability(ISampleStore samples, int sIdx)
+	{
+		return samples.computeAvailability(sIdx, _bundle);
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object rhsObj)
+	{
+		if( this == rhsObj )						return true;
+		if( !(rhsObj instanceof MarginalQuery) )	return false;
+		
+		MarginalQuery rhs = (MarginalQuery)rhsObj;
+		return Arrays.equals(_bundle, rhs._bundle) && Arrays.equals(_conditioningRVs, rhs._conditioningRVs) 
+			&& Arrays.equals(_realizations, rhs._realizations);
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode()
+	{
+		return 31 * (31 * Arrays.hashCode(_bundle) + Arrays.hashCode(_conditioningRVs)) + Arrays.hashCode(_realizations);
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return "bundle=" + Arrays.toString(_bundle) + " | " + Arrays.toString(_conditioningRVs) + "=" + Arrays.toString(_realizations);
+	}
+	
+	private int[] _bundle;									//Sorted 0-based indices of RVs of the bundle
+	private int[] _conditioningRVs;							//Sorted 0-based indices of conditioning RVs
+	private double[] _realizations;							//Realized values of conditioning RVs
+}
@@ -0,0 +1,102 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.BitSet;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The class implements a fork-join worker accumulating availabilities of bundles over a range of samples.
+ * @author Dmitry Moor
+ *
+ */
+class MarginalsWorker extends RecursiveTask<double[]>
+{
+	private static final long serialVersionUID = 1L;
+	
+	private ISampleStore _samples;								// A storage of samples
+	private MarginalQuery[] _queries;							// Compiled queries with the same conditioning
+	private int _sampleLow;										// Lower bound of the sample index range
+	private int _sampleHigh;									// Upper bound (exclusive) of the sample index range
+	
+	public MarginalsWorker(ISampleStore samples, MarginalQuery[] queries, int sampleLow, int sampleHigh)
+	{
+		_samples = samples;
+		_queries = queries;
+		_sampleLow = sampleLow;
+		_sampleHigh = sampleHigh;
+	}
+	
+	@Override
+	protected double[] compute()
+	{
+		if( _sampleHigh - _sampleLow <= JointProbabilityMass._samplesPerBlock )
+			return accumulateMarginals(_samples, _queries, _sampleLow, _sampleHigh);
+		
+		int sampleMid = (_sampleLow + _sampleHigh) >>> 1;
+		MarginalsWorker left = new MarginalsWorker(_samples, _queries, _sampleLow, sampleMid);
+		left.fork();
+		double[] sums = new MarginalsWorker(_samples, _queries, sampleMid, _sampleHigh).compute();
+		double[] leftSums = left.join();
+		for(int b = 0; b < sums.length; ++b)
+			sums[b] += leftSums[b];
+		return sums;
+	}
+	
+	/**
+	 * The method accumulates availabilities of bundles over the specified range of samples. All queries should have
+	 * the same conditioning.
+	 * @param samples a storage of samples
+	 * @param queries compiled queries
+	 * @param fromSample the first sample of the range
+	 * @param toSample the last sample of the range (exclusive)
+	 * @return sums of availabilities of the bundles followed by the number of samples satisfying the conditioning
+	 */
+	public static double[] accumulateMarginals(ISampleStore samples, MarginalQuery[] queries, int fromSample, int toSample)
+	{
+		double[] sums = new double[queries.length + 1];
+		if( queries.length == 0 )
+			return sums;
+		
+		int chunkSize = Math.min(JointProbabilityMass._samplesPerBlock, toSample - fromSample);	//Samples are processed in chunks using bulk operations of the storage
+		boolean[] isSatisfied = new boolean[chunkSize];
+		double[] availabilities = new double[chunkSize];
+		for(int first = fromSample; first < toSample; first += chunkSize)
+		{
+			int last = Math.min(toSample, first + chunkSize);
+			samples.checkSatisfied(first, last, queries[0].getConditioningRVs(), queries[0].getRealizations(), isSatisfied);
+			int count = 0;
+			for(int i = 0; i < last - first; ++i)
+				count += isSatisfied[i] ? 1 : 0;
+			if( count == 0 )
+				continue;
+			
+			for(int b = 0; b < queries.length; ++b)
+			{
+				samples.computeAvailabilities(first, last, queries[b].getBundle(), availabilities);
+				for(int i = 0; i < last - first; ++i)
+					sums[b] += isSatisfied[i] ? availabilities[i] : 0.;
+			}
+			sums[queries.length] += count;
+		}
+		return sums;
+	}
+	
+	/**
+	 * The method accumulates availabilities of bundles over the specified samples. All queries should have the same
+	 * conditioning which is satisfied by all specified samples.
+	 * @param samples a storage of samples
+	 * @param queries compiled queries
+	 * @param matchingSamples a bitmap of samples satisfying the conditioning
+	 * @return sums of availabilities of the bundles followed by the number of samples satisfying the conditioning
+	 */
+	public static double[] accumulateMarginals(ISampleStore samples, MarginalQuery[] queries, BitSet matchingSamples)
+	{
+		double[] sums = new double[queries.length + 1];
+		for(int i = matchingSamples.nextSetBit(0); i >= 0; i = matchingSamples.nextSetBit(i+1))
+		{
+			for(int b = 0; b < queries.length; ++b)
+				sums[b] += queries[b].computeAvailability(samples, i);
+			sums[queries.length] += 1;
+		}
+		return sums;
+	}
+}
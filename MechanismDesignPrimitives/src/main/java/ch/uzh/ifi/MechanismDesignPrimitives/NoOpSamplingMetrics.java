@@ -0,0 +1,37 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+/**
+ * The class implements sampling metrics which are ignored. It is used by the jpmf by default.
+ * @author Dmitry Moor
+ *
+ */
+public class NoOpSamplingMetrics implements ISamplingMetrics 
+{
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISamplingMetrics#samplesGenerated(int, long, long)
+	 */
+	@Override
+	public void samplesGenerated(int numberOfSamples, long numberOfExplodedBombs, long elapsedNanos) 
+	{
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISamplingMetrics#cacheAccessed(ch.uzh.ifi.MechanismDesignPrimitives.MarginalQuery, boolean)
+	 */
+	@Override
+	public void cacheAccessed(MarginalQuery query, boolean isHit) 
+	{
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISamplingMetrics#marginalsEvaluated(ch.uzh.ifi.MechanismDesignPrimitives.MarginalQuery[], int, int, long)
+	 */
+	@Override
+	public void marginalsEvaluated(MarginalQuery[] queries, int numberOfSamples, int numberOfAcceptedSamples, long elapsedNanos) 
+	{
+	}
+}
@@ -0,0 +1,178 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The class implements a compact sample storage for jpmfs taking a small number of distinct availability levels
+ * (e.g., generated by bombing strategies subtracting fixed coefficients). Availabilities are stored as 16-bit codes
+ * of levels in contiguous chunks of rows, while the levels themselves are kept in a dictionary which grows when a
+ * new level is stored. Compared to DenseSampleStore this uses 4 times less memory. The level 0 has the code 0, so that
+ * samples which were not stored yet are zero-filled as in DenseSampleStore.
+ * @author Dmitry Moor
+ *
+ */
+public class QuantizedSampleStore implements ISampleStore
+{
+
+	/**
+	 * A simple constructor.
+	 * @param numberOfSamples - the number of samples
+	 * @param numberOfRandomVars - the number of RVs of every sample
+	 */
+	public QuantizedSampleStore(int numberOfSamples, int numberOfRandomVars)
+	{
+		_nSamples = numberOfSamples;
+		_numberOfRandomVars = numberOfRandomVars;
+		_rowsPerChunk = Math.max(1, _maxChunkLength / numberOfRandomVars);
+		
+		int nChunks = (numberOfSamples + _rowsPerChunk - 1) / _rowsPerChunk;
+		_codes = new short[nChunks][];
+		for(int c = 0; c < nChunks; ++c)
+			_codes[c] = new short[ Math.min(_rowsPerChunk, numberOfSamples - c * _rowsPerChunk) * numberOfRandomVars ];
+		
+		_levels = new double[]{0.};										//Codes of unfilled samples are 0
+		_levelCodes = new HashMap<Long, Integer>();
+		_levelCodes.put(Double.doubleToLongBits(0.), 0);
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getNumberOfSamples()
+	 */
+	@Override
+	public int getNumberOfSamples() 
+	{
+		return _nSamples;
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getNumberOfRandomVars()
+	 */
+	@Override
+	public int getNumberOfRandomVars() 
+	{
+		return _numberOfRandomVars;
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getAvailability(int, int)
+	 */
+	@Override
+	public double getAvailability(int sIdx, int rvIdx) 
+	{
+		return _levels[ _codes[sIdx / _rowsPerChunk][(sIdx % _rowsPerChunk) * _numberOfRandomVars + rvIdx] & 0xFFFF ];
+	}
+
+	/**
+	 * The method returns a decoded copy of the sample.
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getSample(int)
+	 */
+	@Override
+	public double[] getSample(int sIdx) 
+	{
+		short[] chunk = _codes[sIdx / _rowsPerChunk];
+		int offset = (sIdx % _rowsPerChunk) * _numberOfRandomVars;
+		double[] levels = _levels;
+		
+		double[] sample = new double[_numberOfRandomVars];
+		for(int j = 0; j < _numberOfRandomVars; ++j)
+			sample[j] = levels[ chunk[offset + j] & 0xFFFF ];
+		return sample;
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#setSample(int, double[])
+	 */
+	@Override
+	public void setSample(int sIdx, double[] sample) 
+	{
+		short[] chunk = _codes[sIdx / _rowsPerChunk];
+		int offset = (sIdx % _rowsPerChunk) * _numberOfRandomVars;
+		
+		double lastLevel = Double.NaN;
+		int lastCode = -1;
+		for(int j = 0; j < _numberOfRandomVars; ++j)
+		{
+			if( lastCode < 0 || Double.doubleToLongBits(sample[j]) != Double.doubleToLongBits(lastLevel) )	//Neighboring RVs often have the same level
+			{
+				lastLevel = sample[j];
+				lastCode = encode(lastLevel);
+			}
+			chunk[offset + j] = (short)lastCode;
+		}
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#computeAvailability(int, int[])
+	 */
+	@Override
+	public double computeAvailability(int sIdx, int[] bundle)
+	{
+		short[] chunk = _codes[sIdx / _rowsPerChunk];
+		int offset = (sIdx % _rowsPerChunk) * _numberOfRandomVars;
+		double[] levels = _levels;
+		
+		double minAvailability = Double.MAX_VALUE;
+		for(int k = 0; k < bundle.length; ++k)
+		{
+			double availability = levels[ chunk[offset + bundle[k]] & 0xFFFF ];
+			if( availability < minAvailability )
+				minAvailability = availability;
+		}
+		return minAvailability;
+	}
+	
+	/**
+	 * The method returns the number of distinct availability levels stored so far (including the level 0 of unfilled
+	 * samples).
+	 * @return the number of levels
+	 */
+	public int getNumberOfLevels()
+	{
+		return _levels.length;
+	}
+	
+	/**
+	 * The method returns the code of the availability level adding it to the dictionary if needed.
+	 * @param level - an availability level
+	 * @return the code of the level
+	 */
+	private int encode(double level)
+	{
+		double[] levels = _levels;
+		for(int c = 0; c < levels.length && c < _maxLinearLookups; ++c)		//Few levels are found faster without hashing
+			if( Double.doubleToLongBits(levels[c]) == Double.doubleToLongBits(level) )
+				return c;
+		
+		synchronized(this)
+		{
+			Integer code = _levelCodes.get( Double.doubleToLongBits(level) );
+			if( code != null )
+				return code;
+			
+			if( _levels.length > 0xFFFF ) throw new RuntimeException("Too many availability levels to be quantized: " + _levels.length);
+			code = _levels.length;
+			double[] newLevels = new double[_levels.length + 1];
+			System.arraycopy(_levels, 0, newLevels, 0, _levels.length);
+			newLevels[code] = level;
+			_levelCodes.put(Double.doubleToLongBits(level), code);
+			_levels = newLevels;											//Published after the level is added
+			return code;
+		}
+	}
+	
+	private static final int _maxChunkLength = 1 << 30;			//The maximal number of codes in a chunk
+	private static final int _maxLinearLookups = 16;			//The number of levels looked up without hashing
+	
+	private int _nSamples;										//Number of samples
+	private int _numberOfRandomVars;							//The number of RVs of every sample
+	private int _rowsPerChunk;									//Number of samples in a chunk of codes
+	private short[][] _codes;									//Codes of levels of samples stored row by row
+	private volatile double[] _levels;							//Dictionary of levels (copied on write)
+	private Map<Long, Integer> _levelCodes;						//Codes of levels (guarded by this)
+}
@@ -0,0 +1,179 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.Arrays;
+
+import ch.uzh.ifi.GraphAlgorithms.Graph;
+
+/**
+ * The class implements a bombing strategy with damage decaying over several hops of the dependency graph: the
+ * availability of a node at the distance of h hops from the epicenter is reduced by the h-th reduction coefficient.
+ * Rings of nodes at every distance up to the radius are precomputed once, so that applying a bomb only costs the
+ * sizes of the rings.
+ * @author Dmitry Moor
+ *
+ */
+public class RadiusBombingStrategy extends SimpleBombingStrategy
+{
+
+	/**
+	 * A simple constructor.
+	 * @param dependencyGraph - graph of dependencies between RVs
+	 * @param probabilityToExplode - probability that the bomb affects the sample
+	 * @param reductionCoefficients - reduction coefs. for nodes at the distance of 0, 1, ..., k hops from the epicenter
+	 */
+	public RadiusBombingStrategy( Graph dependencyGraph, double probabilityToExplode, double[] reductionCoefficients )
+	{
+		if( reductionCoefficients.length == 0 ) throw new RuntimeException("At least one reduction coefficient is required");
+		
+		_dependencyGraph = dependencyGraph;
+		_probabilityToExplode = probabilityToExplode;
+		_reductionCoefficients = Arrays.copyOf(reductionCoefficients, reductionCoefficients.length);
+		buildNeighborIndex();
+		buildRings();
+	}
+	
+	/**
+	 * The method precomputes rings of all nodes using BFS. Nodes of the h-th ring of the i-th node are stored in
+	 * _ringNodes[ _ringOffsets[i*(k+1)+h] ... _ringOffsets[i*(k+1)+h+1]-1 ], i.e., all rings of a node are stored
+	 * contiguously in the order of their distances.
+	 */
+	private void buildRings()
+	{
+		int nNodes = _neighborOffsets.length - 1;
+		int nRings = _reductionCoefficients.length;
+		_ringOffsets = new int[nNodes * nRings + 1];
+		_ringNodes = new int[nNodes];
+		
+		int[] visitedFrom = new int[nNodes];							//The last source node from which a node was visited
+		Arrays.fill(visitedFrom, -1);
+		int[] queue = new int[nNodes];
+		int nRingNodes = 0;
+		for(int source = 0; source < nNodes; ++source)
+		{
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = source;
+			visitedFrom[source] = source;
+			for(int h = 0; h < nRings; ++h)
+			{
+				int ringEnd = tail;
+				for( ; head < ringEnd; ++head)
+				{
+					int node = queue[head];
+					if( nRingNodes == _ringNodes.length )
+						_ringNodes = Arrays.copyOf(_ringNodes, 2 * nRingNodes);
+					_ringNodes[nRingNodes++] = node;
+					
+					if( h + 1 < nRings )
+						for(int i = _neighborOffsets[node]; i < _neighborOffsets[node+1]; ++i)
+							if( visitedFrom[_neighbors[i]] != source )
+							{
+								visitedFrom[_neighbors[i]] = source;
+								queue[tail++] = _neighbors[i];
+							}
+				}
+				_ringOffsets[source * nRings + h + 1] = nRingNodes;
+			}
+		}
+		_ringNodes = Arrays.copyOf(_ringNodes, nRingNodes);
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.SimpleBombingStrategy#applyBomb(double[], int)
+	 */
+	@Override
+	public double[] applyBomb(double[] sample, int nodeToBomb) 
+	{
+		int nRings = _reductionCoefficients.length;
+		for(int h = 0; h < nRings; ++h)
+			for(int i = _ringOffsets[nodeToBomb * nRings + h]; i < _ringOffsets[nodeToBomb * nRings + h + 1]; ++i)
+				sample[_ringNodes[i]] = Math.max(0., sample[_ringNodes[i]] - _reductionCoefficients[h]);
+		
+		return sample;
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IBombingStrategy#applyBombs(double[], int, int[], int[], int, ch.uzh.ifi.MechanismDesignPrimitives.IRandomGenerator)
+	 */
+	@Override
+	public void applyBombs(double[] block, int numberOfRandomVars, int[] rows, int[] nodesToBomb, int count, IRandomGenerator generator)
+	{
+		int nRings = _reductionCoefficients.length;
+		for(int k = 0; k < count; ++k)
+		{
+			int offset = rows[k] * numberOfRandomVars;
+			int firstRing = nodesToBomb[k] * nRings;
+			for(int h = 0; h < nRings; ++h)
+				for(int i = _ringOffsets[firstRing + h]; i < _ringOffsets[firstRing + h + 1]; ++i)
+					block[offset + _ringNodes[i]] = Math.max(0., block[offset + _ringNodes[i]] - _reductionCoefficients[h]);
+		}
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IBombingStrategy#supportsBatchBombing()
+	 */
+	@Override
+	public boolean supportsBatchBombing()
+	{
+		return true;
+	}
+	
+	/**
+	 * The method returns nodes of all rings, i.e., the bomb affects nodes of all rings of the epicenter (the first of
+	 * which is the epicenter itself).
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IBombingStrategy#getAffectedNodes()
+	 */
+	@Override
+	public int[] getAffectedNodes()
+	{
+		return _ringNodes;
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IBombingStrategy#getAffectedNodesFrom(int)
+	 */
+	@Override
+	public int getAffectedNodesFrom(int nodeToBomb)
+	{
+		return _ringOffsets[nodeToBomb * _reductionCoefficients.length];
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IBombingStrategy#getAffectedNodesTo(int)
+	 */
+	@Override
+	public int getAffectedNodesTo(int nodeToBomb)
+	{
+		return _ringOffsets[(nodeToBomb + 1) * _reductionCoefficients.length];
+	}
+	
+	/**
+	 * The method returns the radius of the bomb, i.e., the max distance (in hops) of damaged nodes from the epicenter.
+	 * @return the radius of the bomb
+	 */
+	public int getRadius()
+	{
+		return _reductionCoefficients.length - 1;
+	}
+	
+	/**
+	 * The method returns the ring of nodes at the specified distance from the epicenter.
+	 * @param nodeToBomb - the epicenter of the bomb explosion
+	 * @param distance - the distance (in hops) from the epicenter
+	 * @return (0-based) indices of nodes of the ring
+	 */
+	public int[] getRing(int nodeToBomb, int distance)
+	{
+		int ringIdx = nodeToBomb * _reductionCoefficients.length + distance;
+		return Arrays.copyOfRange(_ringNodes, _ringOffsets[ringIdx], _ringOffsets[ringIdx + 1]);
+	}
+	
+	private double[] _reductionCoefficients;						//Reduction coefs. for nodes at the distance of 0, 1, ..., k hops
+	private int[] _ringOffsets;										//Offsets of rings of every node in _ringNodes
+	private int[] _ringNodes;										//(0-based) indices of nodes of all rings
+}
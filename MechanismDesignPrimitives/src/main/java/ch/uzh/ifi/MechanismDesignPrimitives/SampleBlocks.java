@@ -0,0 +1,86 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+/**
+ * The class represents a range of samples split into blocks of JointProbabilityMass._samplesPerBlock samples which
+ * are still to be generated. Every block has its own generator drawn in advance, so that blocks can be generated in
+ * any order and by any thread with the same result.
+ * @author Dmitry Moor
+ *
+ */
+class SampleBlocks
+{
+	
+	/**
+	 * Constructor.
+	 * @param samples - a storage of samples to which blocks are written
+	 * @param fromSample - an index of the first sample of the first block
+	 * @param toSample - an index of the last sample of the last block (exclusive)
+	 * @param generators - generators of blocks
+	 * @param sampleGenerator - the generator of samples of blocks
+	 */
+	public SampleBlocks(ISampleStore samples, int fromSample, int toSample, IRandomGenerator[] generators, SampleGenerator sampleGenerator)
+	{
+		_samples = samples;
+		_fromSample = fromSample;
+		_toSample = toSample;
+		_generators = generators;
+		_sampleGenerator = sampleGenerator;
+	}
+	
+	/**
+	 * The method returns the number of blocks.
+	 * @return the number of blocks
+	 */
+	public int getNumberOfBlocks()
+	{
+		return _generators.length;
+	}
+	
+	/**
+	 * The method checks if the block is still to be generated.
+	 * @param blockIdx - an index of the block
+	 * @return true if the block was not generated yet and false otherwise
+	 */
+	public boolean isStale(int blockIdx)
+	{
+		return _generators[blockIdx] != null;
+	}
+	
+	/**
+	 * The method returns the number of samples of the specified range of blocks which are still to be generated.
+	 * @param blockLow - an index of the first block
+	 * @param blockHigh - an index of the last block (exclusive)
+	 * @return the number of samples
+	 */
+	public int getNumberOfStaleSamples(int blockLow, int blockHigh)
+	{
+		int nSamples = 0;
+		for(int b = blockLow; b < blockHigh; ++b)
+			if( _generators[b] != null )
+				nSamples += Math.min(_toSample, _fromSample + (b + 1) * JointProbabilityMass._samplesPerBlock) - (_fromSample + b * JointProbabilityMass._samplesPerBlock);
+		return nSamples;
+	}
+	
+	/**
+	 * The method generates a block of samples if it was not generated yet and resets its generator.
+	 * @param blockIdx - an index of the block
+	 * @return the number of bombs which exploded (0 if the block was generated before)
+	 */
+	public long generateBlock(int blockIdx)
+	{
+		IRandomGenerator generator = _generators[blockIdx];
+		if( generator == null )
+			return 0;
+		
+		int firstSampleIdx = _fromSample + blockIdx * JointProbabilityMass._samplesPerBlock;
+		long nExplodedBombs = _sampleGenerator.generateBlock(_samples, firstSampleIdx, Math.min(_toSample, firstSampleIdx + JointProbabilityMass._samplesPerBlock), firstSampleIdx, generator);
+		_generators[blockIdx] = null;
+		return nExplodedBombs;
+	}
+	
+	private final ISampleStore _samples;					//Storage to which blocks are written
+	private final int _fromSample;							//An index of the first sample of the first block
+	private final int _toSample;							//An index of the last sample of the last block (exclusive)
+	private final IRandomGenerator[] _generators;			//Generators of blocks (null if a block is generated)
+	private final SampleGenerator _sampleGenerator;			//Generator of samples of blocks
+}
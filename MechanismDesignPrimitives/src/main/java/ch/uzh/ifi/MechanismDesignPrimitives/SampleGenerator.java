@@ -0,0 +1,317 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The class generates blocks of samples using the "bombing" algorithm. An object captures the configuration of
+ * bombing (bombs, the number of bombs to throw and the sampling scheme), i.e., it is not affected by later changes
+ * of the jpmf and can be shared by threads generating different blocks.
+ * @author Dmitry Moor
+ *
+ */
+class SampleGenerator
+{
+	
+	/**
+	 * Constructor.
+	 * @param numberOfRandomVars - the number of random variables (= #nodes in the dependency graph)
+	 * @param bombingStrategies - a list of bombing strategies
+	 * @param bombsAliasTable - the alias table of the probability distribution over bombing strategies
+	 * @param probabilitiesToExplode - probabilities of bombing strategies to explode (null if all bombs explode)
+	 * @param nBombsToThrow - the number of bombs thrown per sample
+	 * @param samplingScheme - the scheme of drawing epicenters and types of bombs
+	 * @param haltonSequence - the low-discrepancy sequence of the QUASI_MONTE_CARLO scheme (null for other schemes)
+	 */
+	public SampleGenerator(int numberOfRandomVars, List<IBombingStrategy> bombingStrategies, AliasTable bombsAliasTable, double[] probabilitiesToExplode,
+						   int nBombsToThrow, SamplingScheme samplingScheme, HaltonSequence haltonSequence)
+	{
+		_numberOfRandomVars = numberOfRandomVars;
+		_bombingStrategies = bombingStrategies;
+		_bombsAliasTable = bombsAliasTable;
+		_probabilitiesToExplode = probabilitiesToExplode;
+		_nBombsToThrow = nBombsToThrow;
+		_samplingScheme = samplingScheme;
+		_haltonSequence = haltonSequence;
+	}
+	
+	/**
+	 * The method generates one block of samples. Samples of the block are generated in batches of at most
+	 * _maxBatchLength availabilities: all bombs of a batch are drawn at once (see throwBombs(...)) and then applied
+	 * either sample by sample, or using batch bombing if all strategies support it, or sparsely for sparse storages.
+	 * All three ways produce the same samples as long as strategies do not draw random numbers themselves.
+	 * @param samples - a storage of samples to which samples of the block are written
+	 * @param firstSampleIdx - an index of the first sample of the block
+	 * @param lastSampleIdx - an index of the last sample of the block (exclusive)
+	 * @param sequenceIdx - an index of the first sample of the block in the sequence of all samples being generated
+	 * @param generator - the random number generator of the block
+	 * @return the number of bombs which exploded
+	 */
+	public long generateBlock(ISampleStore samples, int firstSampleIdx, int lastSampleIdx, int sequenceIdx, IRandomGenerator generator)
+	{
+		boolean isBatchBombingSupported = true;
+		for(IBombingStrategy bomb : _bombingStrategies)
+			isBatchBombingSupported &= bomb.supportsBatchBombing();
+		
+		int batchSize = Math.max(1, Math.min(lastSampleIdx - firstSampleIdx, _maxBatchLength / _numberOfRandomVars));
+		
+		int[] nodesToBomb = new int[batchSize * _nBombsToThrow];
+		int[] bombsToThrow = new int[batchSize * _nBombsToThrow];
+		double[] uniforms = new double[batchSize * _nBombsToThrow];
+		SparseWorkspace workspace = samples instanceof SparseSampleStore ? new SparseWorkspace(_numberOfRandomVars) : null;
+		double[] block = workspace == null && isBatchBombingSupported ? new double[batchSize * _numberOfRandomVars] : null;
+		double[] sample = workspace == null && !isBatchBombingSupported ? new double[_numberOfRandomVars] : null;
+		
+		long nExplodedBombs = 0;
+		for(int first = firstSampleIdx; first < lastSampleIdx; first += batchSize)
+		{
+			int nRows = Math.min(batchSize, lastSampleIdx - first);
+			nExplodedBombs += throwBombs(generator, nRows, sequenceIdx + first - firstSampleIdx, nodesToBomb, bombsToThrow, uniforms);
+			
+			if( workspace != null )
+				generateSparseBatch((SparseSampleStore)samples, first, nRows, nodesToBomb, bombsToThrow, workspace, generator);
+			else if( isBatchBombingSupported )
+				generateBatch(samples, first, nRows, nodesToBomb, bombsToThrow, block, generator);
+			else
+				for(int r = 0; r < nRows; ++r)
+				{
+					Arrays.fill(sample, 1.);								//Initialize states of every node in the dependency graph
+					for(int j = r * _nBombsToThrow; j < (r + 1) * _nBombsToThrow; ++j)
+						if( bombsToThrow[j] != _dud )
+							sample = _bombingStrategies.get(bombsToThrow[j]).applyBomb(sample, nodesToBomb[j], generator);
+					
+					samples.setSample(first + r, sample);					//Add the sample to the set of generated samples
+				}
+		}
+		return nExplodedBombs;
+	}
+	
+	/**
+	 * The method throws "bombs" into the grid for a batch of samples: for every bomb of every sample it picks a node
+	 * uniformly at random and chooses a bomb according to the probabilities of falling. Depending on the sampling
+	 * scheme, uniforms are either i.i.d., or stratified over the batch (for every bomb round the samples of the batch
+	 * get a random permutation of nRows equal strata of [0, 1)), or taken from the Halton sequence. If some bombs may
+	 * not explode, duds are resolved afterwards for the whole batch with a single batched draw of uniforms and marked
+	 * with _dud, so that the sampling loops need no per-bomb random draws.
+	 * @param generator - a random number generator
+	 * @param nRows - the number of samples in the batch
+	 * @param sequenceIdx - an index of the first sample of the batch in the sequence of all samples being generated
+	 * @param nodesToBomb - epicenters of bombs, _nBombsToThrow per sample (output)
+	 * @param bombsToThrow - indices of thrown bombs or _dud, _nBombsToThrow per sample (output)
+	 * @param uniforms - a work array for uniforms
+	 * @return the number of bombs which explode
+	 */
+	private int throwBombs(IRandomGenerator generator, int nRows, int sequenceIdx, int[] nodesToBomb, int[] bombsToThrow, double[] uniforms)
+	{
+		int nBombs = nRows * _nBombsToThrow;
+		switch( _samplingScheme )
+		{
+			case MONTE_CARLO:
+				for(int k = 0; k < nBombs; ++k)
+				{
+					nodesToBomb[k] = generator.nextInt(_numberOfRandomVars);				//Pick a random node uniformly
+					bombsToThrow[k] = _bombsAliasTable.sample(generator);					//Choose a bomb to be thrown according to the prob. of falling
+				}
+				break;
+			case STRATIFIED:
+				int[] strata = new int[nRows];
+				for(int j = 0; j < _nBombsToThrow; ++j)
+				{
+					permuteStrata(strata, generator);
+					for(int r = 0; r < nRows; ++r)
+						nodesToBomb[r * _nBombsToThrow + j] = Math.min(_numberOfRandomVars - 1, (int)((strata[r] + generator.nextDouble()) / nRows * _numberOfRandomVars));
+					
+					permuteStrata(strata, generator);
+					for(int r = 0; r < nRows; ++r)
+						bombsToThrow[r * _nBombsToThrow + j] = _bombsAliasTable.sample( (strata[r] + generator.nextDouble()) / nRows );
+				}
+				break;
+			case QUASI_MONTE_CARLO:
+				for(int r = 0; r < nRows; ++r)
+					for(int j = 0; j < _nBombsToThrow; ++j)
+					{
+						nodesToBomb[r * _nBombsToThrow + j] = Math.min(_numberOfRandomVars - 1, (int)(_haltonSequence.get(sequenceIdx + r, 2 * j) * _numberOfRandomVars));
+						bombsToThrow[r * _nBombsToThrow + j] = _bombsAliasTable.sample( _haltonSequence.get(sequenceIdx + r, 2 * j + 1) );
+					}
+				break;
+			default:
+				throw new RuntimeException("Unsupported sampling scheme: " + _samplingScheme);
+		}
+		
+		if( _probabilitiesToExplode == null )
+			return nBombs;
+		
+		generator.nextDoubles(uniforms, nBombs);
+		int nExplodedBombs = 0;
+		for(int k = 0; k < nBombs; ++k)
+		{
+			boolean isExploded = uniforms[k] < _probabilitiesToExplode[bombsToThrow[k]];
+			bombsToThrow[k] = isExploded ? bombsToThrow[k] : _dud;
+			nExplodedBombs += isExploded ? 1 : 0;
+		}
+		return nExplodedBombs;
+	}
+	
+	/**
+	 * The method generates a random permutation of strata 0, 1, ..., strata.length-1 (Fisher-Yates shuffle).
+	 * @param strata - an array to be filled with the permutation
+	 * @param generator - a random number generator
+	 */
+	private static void permuteStrata(int[] strata, IRandomGenerator generator)
+	{
+		for(int r = 0; r < strata.length; ++r)
+		{
+			int k = generator.nextInt(r + 1);
+			strata[r] = strata[k];
+			strata[k] = r;
+		}
+	}
+	
+	/**
+	 * The method generates a batch of samples using batch bombing. Bombs are applied round by round, i.e., the j-th
+	 * bomb of every sample of the batch is applied before the (j+1)-th one, and bombs of a round are grouped by
+	 * bombing strategies. Duds are skipped while grouping.
+	 * @param samples - a storage of samples to which the batch is written
+	 * @param first - an index of the first sample of the batch
+	 * @param nRows - the number of samples in the batch
+	 * @param nodesToBomb - epicenters of bombs
+	 * @param bombsToThrow - indices of thrown bombs or _dud
+	 * @param block - a work block of samples
+	 * @param generator - the random number generator of the block
+	 */
+	private void generateBatch(ISampleStore samples, int first, int nRows, int[] nodesToBomb, int[] bombsToThrow, double[] block, IRandomGenerator generator)
+	{
+		int[] rows = new int[nRows];
+		int[] nodes = new int[nRows];
+		Arrays.fill(block, 0, nRows * _numberOfRandomVars, 1.);
+		
+		for(int j = 0; j < _nBombsToThrow; ++j)
+			for(int bombIdx = 0; bombIdx < _bombingStrategies.size(); ++bombIdx)
+			{
+				int count = 0;
+				for(int r = 0; r < nRows; ++r)									//Branch-free compaction of bombs of the strategy
+				{
+					rows[count] = r;
+					nodes[count] = nodesToBomb[r * _nBombsToThrow + j];
+					count += bombsToThrow[r * _nBombsToThrow + j] == bombIdx ? 1 : 0;
+				}
+				if( count > 0 )
+					_bombingStrategies.get(bombIdx).applyBombs(block, _numberOfRandomVars, rows, nodes, count, generator);
+			}
+		
+		samples.setSamples(first, block, nRows);
+	}
+	
+	/**
+	 * The method generates a batch of sparse samples. Bombs are thrown into a work sample in which all nodes are
+	 * available, after which only the nodes affected by bombs are stored and restored.
+	 * @param samples - a storage of samples to which the batch is written
+	 * @param first - an index of the first sample of the batch
+	 * @param nRows - the number of samples in the batch
+	 * @param nodesToBomb - epicenters of bombs
+	 * @param bombsToThrow - indices of thrown bombs or _dud
+	 * @param workspace - work arrays of the block
+	 * @param generator - the random number generator of the block
+	 */
+	private void generateSparseBatch(SparseSampleStore samples, int first, int nRows, int[] nodesToBomb, int[] bombsToThrow, SparseWorkspace workspace, IRandomGenerator generator)
+	{
+		for(int r = 0; r < nRows; ++r)
+		{
+			workspace._nTouched = 0;
+			boolean isAnyNodeTouched = false;						//True if affected nodes of some bomb are unknown
+			for(int j = r * _nBombsToThrow; j < (r + 1) * _nBombsToThrow; ++j)
+			{
+				if( bombsToThrow[j] == _dud )
+					continue;
+				
+				IBombingStrategy bomb = _bombingStrategies.get(bombsToThrow[j]);
+				workspace._sample = bomb.applyBomb(workspace._sample, nodesToBomb[j], generator);
+				
+				int[] affectedNodes = bomb.getAffectedNodes();
+				if( affectedNodes == null )
+					isAnyNodeTouched = true;
+				else if( !isAnyNodeTouched )
+				{
+					workspace.touch(nodesToBomb[j]);
+					for(int i = bomb.getAffectedNodesFrom(nodesToBomb[j]); i < bomb.getAffectedNodesTo(nodesToBomb[j]); ++i)
+						workspace.touch(affectedNodes[i]);
+				}
+			}
+			
+			int nTouched = workspace._nTouched;
+			double[] sample = workspace._sample;
+			if( isAnyNodeTouched )									//Fall back to scanning the whole sample
+			{
+				samples.setSample(first + r, sample);
+				Arrays.fill(sample, 1.);
+				Arrays.fill(workspace._isTouched, false);
+				continue;
+			}
+			
+			int[] touchedNodes = workspace._touchedNodes;
+			Arrays.sort(touchedNodes, 0, nTouched);
+			if( workspace._levels.length < nTouched )
+				workspace._levels = new double[touchedNodes.length];
+			int nDamaged = 0;
+			for(int k = 0; k < nTouched; ++k)
+			{
+				int node = touchedNodes[k];
+				if( sample[node] != 1. )
+				{
+					touchedNodes[nDamaged] = node;
+					workspace._levels[nDamaged++] = sample[node];
+				}
+				sample[node] = 1.;
+				workspace._isTouched[node] = false;
+			}
+			samples.setSample(first + r, touchedNodes, workspace._levels, nDamaged);
+		}
+	}
+	
+	/**
+	 * Work arrays used to generate sparse samples of one block.
+	 * @author Dmitry Moor
+	 *
+	 */
+	private static class SparseWorkspace
+	{
+		public SparseWorkspace(int numberOfRandomVars)
+		{
+			_sample = new double[numberOfRandomVars];
+			Arrays.fill(_sample, 1.);
+			_isTouched = new boolean[numberOfRandomVars];
+		}
+		
+		/**
+		 * The method marks a node of the work sample as touched by a bomb.
+		 * @param node - a (0-based) index of the node
+		 */
+		public void touch(int node)
+		{
+			if( _isTouched[node] )
+				return;
+			
+			_isTouched[node] = true;
+			if( _nTouched == _touchedNodes.length )
+				_touchedNodes = Arrays.copyOf(_touchedNodes, 2 * _nTouched);
+			_touchedNodes[_nTouched++] = node;
+		}
+		
+		private double[] _sample;									// The work sample shared by all samples of the block
+		private boolean[] _isTouched;								// Whether a node of the work sample was touched by bombs
+		private int[] _touchedNodes = new int[16];					// Nodes touched by bombs
+		private int _nTouched;										// Number of nodes touched by bombs
+		private double[] _levels = new double[16];					// Availabilities of damaged nodes
+	}
+	
+	private final int _numberOfRandomVars;					//The number of random variables (= #nodes in the dependency graph)
+	private final List<IBombingStrategy> _bombingStrategies;//Possible bombing strategies
+	private final AliasTable _bombsAliasTable;				//Alias table of the probability distribution over bombing strategies
+	private final double[] _probabilitiesToExplode;			//Probabilities of bombing strategies to explode (null if all bombs explode)
+	private final int _nBombsToThrow;						//Number of bombs thrown per sample
+	private final SamplingScheme _samplingScheme;			//Scheme of drawing epicenters and types of bombs
+	private final HaltonSequence _haltonSequence;			//Low-discrepancy sequence of the QUASI_MONTE_CARLO scheme
+	
+	private static final int _maxBatchLength = 1 << 16;		//Max number of availabilities in a batch of samples bombed at once
+	private static final int _dud = -1;						//Marks a thrown bomb which does not explode
+}
@@ -0,0 +1,85 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The class implements an inverted index over realizations of random variables in a set of samples. For every
+ * indexed RV the index maps each availability level to a bitmap of samples in which the RV has this level. An RV
+ * is indexed when it is used for conditioning for the first time.
+ * @author Dmitry Moor
+ *
+ */
+public class SampleIndex 
+{
+
+	/**
+	 * A simple constructor.
+	 * @param samples - samples to be indexed (should not be modified while the index is used)
+	 * @param numberOfSamples - the number of samples
+	 */
+	public SampleIndex(ISampleStore samples, int numberOfSamples)
+	{
+		_samples = samples;
+		_nSamples = numberOfSamples;
+		_levels = new ConcurrentHashMap<Integer, Map<Double, BitSet>>();
+	}
+	
+	/**
+	 * The method returns samples satisfying the conditioning of the query, i.e., the intersection of bitmaps of
+	 * realized levels of all conditioning RVs.
+	 * @param query - a compiled query
+	 * @return a bitmap of matching samples
+	 */
+	public BitSet getMatchingSamples(MarginalQuery query)
+	{
+		int[] conditioningRVs = query.getConditioningRVs();
+		double[] realizations = query.getRealizations();
+		
+		BitSet matchingSamples = new BitSet(_nSamples);
+		matchingSamples.set(0, _nSamples);
+		for(int k = 0; k < conditioningRVs.length && !matchingSamples.isEmpty(); ++k)
+		{
+			double level = realizations[k] == 0. ? 0. : realizations[k];
+			BitSet samplesWithLevel = Double.isNaN(level) ? null : getLevels(conditioningRVs[k]).get(level);
+			if( samplesWithLevel == null )
+				matchingSamples.clear();
+			else
+				matchingSamples.and(samplesWithLevel);
+		}
+		return matchingSamples;
+	}
+	
+	/**
+	 * The method returns the index of the specified RV building it if needed.
+	 * @param rvIdx - an index of the RV
+	 * @return a map from levels of the RV to bitmaps of samples
+	 */
+	private Map<Double, BitSet> getLevels(int rvIdx)
+	{
+		return _levels.computeIfAbsent(rvIdx, idx -> 
+		{
+			Map<Double, BitSet> levels = new HashMap<Double, BitSet>();
+			for(int i = 0; i < _nSamples; ++i)
+			{
+				double level = _samples.getAvailability(i, idx);
+				if( level == 0. )												//-0.0 == 0.0 when conditioning
+					level = 0.;
+				BitSet samplesWithLevel = levels.get(level);
+				if( samplesWithLevel == null )
+				{
+					samplesWithLevel = new BitSet(_nSamples);
+					levels.put(level, samplesWithLevel);
+				}
+				samplesWithLevel.set(i);
+			}
+			return levels;
+		});
+	}
+	
+	private ISampleStore _samples;								//Indexed samples
+	private int _nSamples;										//Number of samples
+	private Map<Integer, Map<Double, BitSet>> _levels;			//Bitmaps of samples per level per indexed RV
+}
@@ -0,0 +1,14 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+/**
+ * Storage layouts of samples of a joint probability mass function.
+ * @author Dmitry Moor
+ *
+ */
+public enum SampleStorage 
+{
+	DENSE,					//Every sample is an array of doubles (DenseSampleStore)
+	QUANTIZED,				//Samples are stored as 16-bit codes of availability levels (QuantizedSampleStore)
+	SPARSE,					//Only damaged RVs of samples are stored (SparseSampleStore)
+	COLUMN_MAJOR			//Availabilities of every RV are stored contiguously (ColumnMajorSampleStore)
+}
@@ -0,0 +1,13 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+/**
+ * Schemes of drawing epicenters and types of bombs when sampling a joint probability mass function.
+ * @author Dmitry Moor
+ *
+ */
+public enum SamplingScheme 
+{
+	MONTE_CARLO,			//I.i.d. uniforms for every bomb
+	STRATIFIED,				//Latin hypercube sampling of epicenters and types of every bomb over a batch of samples
+	QUASI_MONTE_CARLO		//Randomly shifted Halton sequence (HaltonSequence) indexed by samples
+}
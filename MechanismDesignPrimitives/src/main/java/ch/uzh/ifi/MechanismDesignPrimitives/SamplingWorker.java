@@ -0,0 +1,43 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The class implements a fork-join worker generating a range of blocks of samples.
+ * @author Dmitry Moor
+ *
+ */
+class SamplingWorker extends RecursiveAction
+{
+	private static final long serialVersionUID = 1L;
+	
+	private SampleBlocks _blocks;								// Blocks of samples to be generated
+	private int _blockLow;										// Lower bound of the block index range
+	private int _blockHigh;										// Upper bound (exclusive) of the block index range
+	private LongAdder _nExplodedBombs;							// The number of bombs which exploded in generated blocks
+	
+	public SamplingWorker(SampleBlocks blocks, int blockLow, int blockHigh, LongAdder nExplodedBombs)
+	{
+		_blocks = blocks;
+		_blockLow = blockLow;
+		_blockHigh = blockHigh;
+		_nExplodedBombs = nExplodedBombs;
+	}
+	
+	@Override
+	protected void compute()
+	{
+		if( _blockHigh - _blockLow <= 1 )
+		{
+			for(int b = _blockLow; b < _blockHigh; ++b)
+				_nExplodedBombs.add( _blocks.generateBlock(b) );
+		}
+		else
+		{
+			int blockMid = (_blockLow + _blockHigh) >>> 1;
+			invokeAll(new SamplingWorker(_blocks, _blockLow, blockMid, _nExplodedBombs),
+					  new SamplingWorker(_blocks, blockMid, _blockHigh, _nExplodedBombs));
+		}
+	}
+}
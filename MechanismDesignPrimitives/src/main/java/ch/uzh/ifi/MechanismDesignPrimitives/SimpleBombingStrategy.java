@@ -1,6 +1,9 @@
 package ch.uzh.ifi.MechanismDesignPrimitives;
 
+import java.util.List;
+
 import ch.uzh.ifi.GraphAlgorithms.Graph;
+import ch.uzh.ifi.GraphAlgorithms.VertexCell;
 
 /**
  * 
@@ -16,6 +19,39 @@ public abstract class SimpleBombingStrategy implements IBombingStrategy
 	@Override
 	public abstract double[] applyBomb(double[] sample, int nodeToBomb);
 	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IBombingStrategy#getProbabilityToExplode()
+	 */
+	@Override
+	public double getProbabilityToExplode()
+	{
+		return _probabilityToExplode;
+	}
+	
+	/**
+	 * The method builds a compressed sparse row (CSR) snapshot of the dependency graph: neighbors of the i-th node
+	 * are stored in _neighbors[ _neighborOffsets[i] ... _neighborOffsets[i+1]-1 ] as 0-based indices. Changes of the
+	 * graph made after the strategy was created are not seen by the strategy.
+	 */
+	protected void buildNeighborIndex()
+	{
+		List<List<VertexCell>> adjacencyLists = _dependencyGraph.getAdjacencyLists();
+		_neighborOffsets = new int[adjacencyLists.size() + 1];
+		for(int i = 0; i < adjacencyLists.size(); ++i)
+			_neighborOffsets[i+1] = _neighborOffsets[i] + adjacencyLists.get(i).size();
+		
+		_neighbors = new int[ _neighborOffsets[adjacencyLists.size()] ];
+		for(int i = 0; i < adjacencyLists.size(); ++i)
+		{
+			List<VertexCell> itsNeighbors = adjacencyLists.get(i);
+			for(int j = 0; j < itsNeighbors.size(); ++j)
+				_neighbors[_neighborOffsets[i] + j] = itsNeighbors.get(j)._v.getID()-1;
+		}
+	}
+	
 	protected Graph  _dependencyGraph;				//Dependency graph for RVs
 	protected double _probabilityToExplode;			//Probability that the bomb actually affects the sample
+	protected int[]  _neighborOffsets;				//CSR offsets of neighbors of every node (see buildNeighborIndex())
+	protected int[]  _neighbors;					//CSR (0-based) indices of neighbors
 }
@@ -0,0 +1,151 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.Arrays;
+
+/**
+ * The class implements a sparse sample storage keeping only "damaged" random variables of every sample, i.e., RVs
+ * with availability different from 1. RVs which are absent from a sample are fully available. Memory consumption
+ * scales with the number of damaged RVs instead of the size of the dependency graph.
+ * @author Dmitry Moor
+ *
+ */
+public class SparseSampleStore implements ISampleStore
+{
+
+	/**
+	 * A simple constructor.
+	 * @param numberOfSamples - the number of samples
+	 * @param numberOfRandomVars - the number of RVs of every sample
+	 */
+	public SparseSampleStore(int numberOfSamples, int numberOfRandomVars)
+	{
+		_numberOfRandomVars = numberOfRandomVars;
+		_damagedRVs = new int[numberOfSamples][];
+		_levels = new double[numberOfSamples][];
+		Arrays.fill(_damagedRVs, _noRVs);
+		Arrays.fill(_levels, _noLevels);
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getNumberOfSamples()
+	 */
+	@Override
+	public int getNumberOfSamples() 
+	{
+		return _damagedRVs.length;
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getNumberOfRandomVars()
+	 */
+	@Override
+	public int getNumberOfRandomVars() 
+	{
+		return _numberOfRandomVars;
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getAvailability(int, int)
+	 */
+	@Override
+	public double getAvailability(int sIdx, int rvIdx) 
+	{
+		int pos = Arrays.binarySearch(_damagedRVs[sIdx], rvIdx);
+		return pos >= 0 ? _levels[sIdx][pos] : 1.;
+	}
+
+	/**
+	 * The method returns a dense copy of the sample.
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#getSample(int)
+	 */
+	@Override
+	public double[] getSample(int sIdx) 
+	{
+		double[] sample = new double[_numberOfRandomVars];
+		Arrays.fill(sample, 1.);
+		
+		int[] damagedRVs = _damagedRVs[sIdx];
+		double[] levels = _levels[sIdx];
+		for(int k = 0; k < damagedRVs.length; ++k)
+			sample[damagedRVs[k]] = levels[k];
+		return sample;
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#setSample(int, double[])
+	 */
+	@Override
+	public void setSample(int sIdx, double[] sample) 
+	{
+		int nDamaged = 0;
+		for(int j = 0; j < _numberOfRandomVars; ++j)
+			if( sample[j] != 1. )
+				nDamaged += 1;
+		
+		int[] damagedRVs = new int[nDamaged];
+		double[] levels = new double[nDamaged];
+		for(int j = 0, k = 0; j < _numberOfRandomVars; ++j)
+			if( sample[j] != 1. )
+			{
+				damagedRVs[k] = j;
+				levels[k++] = sample[j];
+			}
+		_damagedRVs[sIdx] = damagedRVs;
+		_levels[sIdx] = levels;
+	}
+	
+	/**
+	 * The method stores the sample specified by its damaged RVs.
+	 * @param sIdx - an index of the sample
+	 * @param damagedRVs - sorted (0-based) indices of damaged RVs
+	 * @param levels - availabilities of damaged RVs
+	 * @param nDamaged - the number of damaged RVs
+	 */
+	public void setSample(int sIdx, int[] damagedRVs, double[] levels, int nDamaged)
+	{
+		_damagedRVs[sIdx] = Arrays.copyOf(damagedRVs, nDamaged);
+		_levels[sIdx] = Arrays.copyOf(levels, nDamaged);
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.ISampleStore#computeAvailability(int, int[])
+	 */
+	@Override
+	public double computeAvailability(int sIdx, int[] bundle)
+	{
+		int[] damagedRVs = _damagedRVs[sIdx];
+		double[] levels = _levels[sIdx];
+		
+		double minAvailability = bundle.length > 0 ? 1. : Double.MAX_VALUE;
+		for(int k = 0, pos = 0; k < bundle.length && pos < damagedRVs.length; ++k)		//Both arrays are sorted
+		{
+			while( pos < damagedRVs.length && damagedRVs[pos] < bundle[k] )
+				pos += 1;
+			if( pos < damagedRVs.length && damagedRVs[pos] == bundle[k] && levels[pos] < minAvailability )
+				minAvailability = levels[pos];
+		}
+		return minAvailability;
+	}
+	
+	/**
+	 * The method returns the number of damaged RVs of the sample.
+	 * @param sIdx - an index of the sample
+	 * @return the number of damaged RVs
+	 */
+	public int getNumberOfDamagedRandomVars(int sIdx)
+	{
+		return _damagedRVs[sIdx].length;
+	}
+	
+	private static final int[] _noRVs = new int[0];
+	private static final double[] _noLevels = new double[0];
+	
+	private int _numberOfRandomVars;							//The number of RVs of every sample
+	private int[][] _damagedRVs;								//Sorted indices of damaged RVs per sample
+	private double[][] _levels;									//Availabilities of damaged RVs per sample
+}
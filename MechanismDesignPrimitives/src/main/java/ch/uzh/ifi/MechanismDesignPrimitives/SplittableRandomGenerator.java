@@ -0,0 +1,72 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.SplittableRandom;
+
+/**
+ * The class implements a random number generator backed by java.util.SplittableRandom.
+ * @author Dmitry Moor
+ *
+ */
+public class SplittableRandomGenerator implements IRandomGenerator
+{
+
+	/**
+	 * A simple constructor.
+	 * @param seed - a random seed
+	 */
+	public SplittableRandomGenerator(long seed)
+	{
+		_random = new SplittableRandom(seed);
+	}
+	
+	/**
+	 * The constructor wraps the specified SplittableRandom object.
+	 * @param random - a generator to be wrapped
+	 */
+	private SplittableRandomGenerator(SplittableRandom random)
+	{
+		_random = random;
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IRandomGenerator#nextLong()
+	 */
+	@Override
+	public long nextLong() 
+	{
+		return _random.nextLong();
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IRandomGenerator#split()
+	 */
+	@Override
+	public IRandomGenerator split() 
+	{
+		return new SplittableRandomGenerator(_random.split());
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IRandomGenerator#nextDouble()
+	 */
+	@Override
+	public double nextDouble()
+	{
+		return _random.nextDouble();
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IRandomGenerator#nextInt(int)
+	 */
+	@Override
+	public int nextInt(int bound)
+	{
+		return _random.nextInt(bound);
+	}
+	
+	private SplittableRandom _random;						//The underlying generator
+}
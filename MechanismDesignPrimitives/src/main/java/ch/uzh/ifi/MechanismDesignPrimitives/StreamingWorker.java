@@ -0,0 +1,112 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The class implements a fork-join worker generating a range of blocks of samples and folding them into running
+ * statistics of bundles without storing them. The generator of a range is split into generators of its halves,
+ * so that every block gets the same generator for any number of threads.
+ * @author Dmitry Moor
+ *
+ */
+class StreamingWorker extends RecursiveTask<double[]>
+{
+	private static final long serialVersionUID = 1L;
+	
+	private SampleGenerator _sampleGenerator;					// The generator of samples of the stream
+	private boolean _isSparse;									// Whether blocks are stored sparsely
+	private int _numberOfRandomVars;							// The number of random variables
+	private MarginalQuery[] _queries;							// Compiled queries with the same conditioning
+	private int _nSamples;										// The total number of samples to be generated
+	private int _blockLow;										// Lower bound of the block index range
+	private int _blockHigh;										// Upper bound (exclusive) of the block index range
+	private IRandomGenerator _generator;						// The generator of the range of blocks
+	private LongAdder _nExplodedBombs;							// The number of bombs which exploded in generated blocks
+	
+	public StreamingWorker(SampleGenerator sampleGenerator, boolean isSparse, int numberOfRandomVars, MarginalQuery[] queries, int nSamples, int blockLow, int blockHigh, 
+						   IRandomGenerator generator, LongAdder nExplodedBombs)
+	{
+		_sampleGenerator = sampleGenerator;
+		_isSparse = isSparse;
+		_numberOfRandomVars = numberOfRandomVars;
+		_queries = queries;
+		_nSamples = nSamples;
+		_blockLow = blockLow;
+		_blockHigh = blockHigh;
+		_generator = generator;
+		_nExplodedBombs = nExplodedBombs;
+	}
+	
+	@Override
+	protected double[] compute()
+	{
+		if( _blockHigh - _blockLow <= 1 )
+		{
+			int nBlockSamples = Math.min(_nSamples - _blockLow * JointProbabilityMass._samplesPerBlock, JointProbabilityMass._samplesPerBlock);
+			ISampleStore samples = _isSparse ? new SparseSampleStore(nBlockSamples, _numberOfRandomVars) : new DenseSampleStore(nBlockSamples, _numberOfRandomVars);
+			_nExplodedBombs.add( _sampleGenerator.generateBlock(samples, 0, nBlockSamples, _blockLow * JointProbabilityMass._samplesPerBlock, _generator) );
+			return computeStatistics(_queries, samples, 0, nBlockSamples);
+		}
+		
+		int blockMid = (_blockLow + _blockHigh) >>> 1;
+		StreamingWorker left = new StreamingWorker(_sampleGenerator, _isSparse, _numberOfRandomVars, _queries, _nSamples, _blockLow, blockMid, _generator.split(), _nExplodedBombs);
+		StreamingWorker right = new StreamingWorker(_sampleGenerator, _isSparse, _numberOfRandomVars, _queries, _nSamples, blockMid, _blockHigh, _generator.split(), _nExplodedBombs);
+		if( !inForkJoinPool() )										//Sequential streaming
+			return mergeStatistics(left.compute(), right.compute());
+		
+		left.fork();
+		double[] rightStatistics = right.compute();
+		return mergeStatistics(left.join(), rightStatistics);
+	}
+	
+	/**
+	 * The method computes running statistics (Welford's algorithm) of availabilities of bundles over samples.
+	 * @param queries - compiled queries with the same conditioning
+	 * @param samples - a storage of samples
+	 * @param fromSample - an index of the first sample
+	 * @param toSample - an index of the last sample (exclusive)
+	 * @return the number of samples satisfying the conditioning followed by the mean and the sum of squared deviations
+	 * of availabilities of every bundle
+	 */
+	public static double[] computeStatistics(MarginalQuery[] queries, ISampleStore samples, int fromSample, int toSample)
+	{
+		double[] statistics = new double[1 + 2 * queries.length];
+		for(int i = fromSample; i < toSample; ++i)
+			if( queries[0].isSatisfiedBy(samples, i) )
+			{
+				statistics[0] += 1;
+				for(int b = 0; b < queries.length; ++b)
+				{
+					double availability = queries[b].computeAvailability(samples, i);
+					double delta = availability - statistics[1 + 2 * b];
+					statistics[1 + 2 * b] += delta / statistics[0];
+					statistics[2 + 2 * b] += delta * (availability - statistics[1 + 2 * b]);
+				}
+			}
+		return statistics;
+	}
+	
+	/**
+	 * The method merges running statistics of two disjoint sets of samples (Chan et al.).
+	 * @param left - statistics of the first set of samples
+	 * @param right - statistics of the second set of samples
+	 * @return statistics of the union of sets of samples
+	 */
+	public static double[] mergeStatistics(double[] left, double[] right)
+	{
+		double count = left[0] + right[0];
+		if( left[0] == 0 || right[0] == 0 )
+			return left[0] == 0 ? right : left;
+		
+		double[] statistics = new double[left.length];
+		statistics[0] = count;
+		for(int k = 1; k < left.length; k += 2)
+		{
+			double delta = right[k] - left[k];
+			statistics[k] = left[k] + delta * right[0] / count;
+			statistics[k+1] = left[k+1] + right[k+1] + delta * delta * left[0] * right[0] / count;
+		}
+		return statistics;
+	}
+}
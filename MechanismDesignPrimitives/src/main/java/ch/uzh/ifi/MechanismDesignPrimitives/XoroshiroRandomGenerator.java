@@ -0,0 +1,69 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+/**
+ * The class implements the xoroshiro128++ random number generator (Blackman and Vigna). The 128-bit state is
+ * initialized from the seed using SplitMix64.
+ * @author Dmitry Moor
+ *
+ */
+public class XoroshiroRandomGenerator implements IRandomGenerator
+{
+
+	/**
+	 * A simple constructor.
+	 * @param seed - a random seed
+	 */
+	public XoroshiroRandomGenerator(long seed)
+	{
+		long z = seed;
+		z += 0x9E3779B97F4A7C15L;
+		_s0 = mix64(z);
+		z += 0x9E3779B97F4A7C15L;
+		_s1 = mix64(z);
+		
+		if( _s0 == 0 && _s1 == 0 )								//The all-zero state is not allowed
+			_s0 = 0x9E3779B97F4A7C15L;
+	}
+	
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IRandomGenerator#nextLong()
+	 */
+	@Override
+	public long nextLong() 
+	{
+		long s0 = _s0;
+		long s1 = _s1;
+		long result = Long.rotateLeft(s0 + s1, 17) + s0;
+		
+		s1 ^= s0;
+		_s0 = Long.rotateLeft(s0, 49) ^ s1 ^ (s1 << 21);
+		_s1 = Long.rotateLeft(s1, 28);
+		return result;
+	}
+
+	/**
+	 * (non-Javadoc)
+	 * @see ch.uzh.ifi.MechanismDesignPrimitives.IRandomGenerator#split()
+	 */
+	@Override
+	public IRandomGenerator split() 
+	{
+		return new XoroshiroRandomGenerator(nextLong());
+	}
+	
+	/**
+	 * SplitMix64 finalizer.
+	 * @param z - a value to be mixed
+	 * @return the mixed value
+	 */
+	private static long mix64(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	
+	private long _s0;										//The first half of the state
+	private long _s1;										//The second half of the state
+}
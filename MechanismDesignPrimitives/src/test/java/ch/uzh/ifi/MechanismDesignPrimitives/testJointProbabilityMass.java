@@ -0,0 +1,1109 @@
+package ch.uzh.ifi.MechanismDesignPrimitives;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import ch.uzh.ifi.GraphAlgorithms.Graph;
+import ch.uzh.ifi.GraphAlgorithms.Vertex;
+import ch.uzh.ifi.GraphAlgorithms.VertexCell;
+
+public class testJointProbabilityMass {
+
+	/**
+	 * The method builds a grid dependency graph of the specified size (ids of nodes start from 1).
+	 */
+	private Graph createGrid(int nRows, int nCols)
+	{
+		List<Vertex> vertices = new LinkedList<Vertex>();
+		for(int i = 0; i < nRows * nCols; ++i)
+			vertices.add(new Vertex(i+1));
+		
+		List<List<VertexCell> > adjacencyLists = new LinkedList<List<VertexCell> >();
+		for(int i = 0; i < nRows * nCols; ++i)
+		{
+			List<VertexCell> neighbors = new LinkedList<VertexCell>();
+			int row = i / nCols;
+			int col = i % nCols;
+			if( row > 0 )			neighbors.add(new VertexCell(vertices.get(i - nCols), 1.));
+			if( row < nRows - 1 )	neighbors.add(new VertexCell(vertices.get(i + nCols), 1.));
+			if( col > 0 )			neighbors.add(new VertexCell(vertices.get(i - 1), 1.));
+			if( col < nCols - 1 )	neighbors.add(new VertexCell(vertices.get(i + 1), 1.));
+			adjacencyLists.add(neighbors);
+		}
+		return new Graph(vertices, adjacencyLists);
+	}
+	
+	private JointProbabilityMass createJPMF(Graph grid, int nSamples, long seed)
+	{
+		List<IBombingStrategy> bombs = new LinkedList<IBombingStrategy>();
+		bombs.add(new FocusedBombingStrategy(grid, 1., 0.4, 0.3));
+		bombs.add(new FocusedBombingStrategy(grid, 1., 0.2, 0.1));
+		
+		List<Double> probDistribution = new LinkedList<Double>();
+		probDistribution.add(0.5);
+		probDistribution.add(0.5);
+		
+		JointProbabilityMass jpmf = new JointProbabilityMass(grid);
+		jpmf.setNumberOfSamples(nSamples);
+		jpmf.setNumberOfBombsToThrow(3);
+		jpmf.setBombs(bombs, probDistribution);
+		jpmf.setSeed(seed);
+		return jpmf;
+	}
+	
+	@Test
+	public void testReproducibleParallelSampling() 
+	{
+		Graph grid = createGrid(4, 4);
+		JointProbabilityMass sequential = createJPMF(grid, 1000, 12345L);
+		JointProbabilityMass parallel = createJPMF(grid, 1000, 12345L);
+		parallel.setNumberOfThreads(4);
+		
+		sequential.update();
+		parallel.update();
+		for(int i = 0; i < 1000; ++i)
+			for(int j = 0; j < 16; ++j)
+				assertTrue( sequential.getSample(i)[j] == parallel.getSample(i)[j] );
+		
+		double[] firstSample = sequential.getSample(0).clone();
+		sequential.getSample();										//Picking a random sample does not affect generation
+		sequential.update();
+		parallel.update();
+		for(int i = 0; i < 1000; ++i)
+			for(int j = 0; j < 16; ++j)
+				assertTrue( sequential.getSample(i)[j] == parallel.getSample(i)[j] );
+		
+		boolean isResampled = false;
+		for(int j = 0; j < firstSample.length; ++j)
+			if( firstSample[j] != sequential.getSample(0)[j] )
+				isResampled = true;
+		assertTrue(isResampled);
+		
+		JointProbabilityMass copy = parallel.copyIt();					//The shared pool is shut down by its owner
+		JointProbabilityMass reference = sequential.copyIt();
+		parallel.setNumberOfThreads(2);
+		copy.update();
+		reference.update();
+		for(int i = 0; i < 1000; ++i)
+			for(int j = 0; j < 16; ++j)
+				assertTrue( copy.getSample(i)[j] == reference.getSample(i)[j] );
+	}
+	
+	@Test
+	public void testMarginalProbability() 
+	{
+		Graph grid = createGrid(4, 4);
+		JointProbabilityMass jpmf = createJPMF(grid, 10000, 1L);
+		jpmf.update();
+		
+		List<Integer> bundle = new LinkedList<Integer>();
+		bundle.add(1);
+		bundle.add(6);
+		double marginal = jpmf.getMarginalProbability(bundle, null, null);
+		assertTrue( marginal > 0. && marginal < 1. );
+		
+		List<Integer> conditioningRVs = new LinkedList<Integer>();
+		conditioningRVs.add(6);
+		List<Double> realizations = new LinkedList<Double>();
+		realizations.add(1.);
+		double conditionalMarginal = jpmf.getMarginalProbability(bundle, conditioningRVs, realizations);
+		assertTrue( conditionalMarginal >= marginal );
+	}
+	
+	@Test
+	public void testPluggableRandomGenerators() 
+	{
+		Graph grid = createGrid(4, 4);
+		IRandomGenerator[] generators1 = { new XoroshiroRandomGenerator(7L), new CounterBasedRandomGenerator(7L) };
+		IRandomGenerator[] generators2 = { new XoroshiroRandomGenerator(7L), new CounterBasedRandomGenerator(7L) };
+		for(int k = 0; k < generators1.length; ++k)
+		{
+			JointProbabilityMass sequential = createJPMF(grid, 500, 0L);
+			sequential.setRandomGenerator(generators1[k]);
+			JointProbabilityMass parallel = createJPMF(grid, 500, 0L);
+			parallel.setRandomGenerator(generators2[k]);
+			parallel.setNumberOfThreads(3);
+			
+			sequential.update();
+			parallel.update();
+			for(int i = 0; i < 500; ++i)
+				for(int j = 0; j < 16; ++j)
+					assertTrue( sequential.getSample(i)[j] == parallel.getSample(i)[j] );
+			
+			for(int i = 0; i < 1000; ++i)
+			{
+				int x = generators1[k].nextInt(7);
+				double u = generators1[k].nextDouble();
+				assertTrue( x >= 0 && x < 7 );
+				assertTrue( u >= 0. && u < 1. );
+			}
+		}
+	}
+	
+	@Test
+	public void testAliasTable() 
+	{
+		List<Double> weights = new LinkedList<Double>();
+		weights.add(0.7);
+		weights.add(0.2);
+		weights.add(0.);
+		weights.add(0.1);
+		AliasTable aliasTable = new AliasTable(weights);
+		
+		IRandomGenerator generator = new SplittableRandomGenerator(3L);
+		int[] counts = new int[4];
+		for(int i = 0; i < 100000; ++i)
+			counts[aliasTable.sample(generator)] += 1;
+		
+		assertTrue( Math.abs(counts[0] / 100000. - 0.7) < 0.01 );
+		assertTrue( Math.abs(counts[1] / 100000. - 0.2) < 0.01 );
+		assertTrue( counts[2] == 0 );
+		assertTrue( Math.abs(counts[3] / 100000. - 0.1) < 0.01 );
+		
+		int[] stratifiedCounts = new int[4];												//Equally spaced uniforms
+		for(int i = 0; i < 100000; ++i)
+			stratifiedCounts[aliasTable.sample( (i + 0.5) / 100000 )] += 1;
+		assertTrue( Math.abs(stratifiedCounts[0] / 100000. - 0.7) < 0.001 );
+		assertTrue( Math.abs(stratifiedCounts[1] / 100000. - 0.2) < 0.001 );
+		assertTrue( stratifiedCounts[2] == 0 );
+		assertTrue( Math.abs(stratifiedCounts[3] / 100000. - 0.1) < 0.001 );
+	}
+	
+	@Test
+	public void testCompiledQuery() 
+	{
+		Graph grid = createGrid(4, 4);
+		JointProbabilityMass jpmf = createJPMF(grid, 5000, 5L);
+		jpmf.update();
+		
+		List<Integer> bundle = new LinkedList<Integer>();
+		bundle.add(7);
+		bundle.add(2);
+		bundle.add(7);
+		bundle.add(42);						//Not an RV of the jpmf
+		List<Integer> conditioningRVs = new LinkedList<Integer>();
+		conditioningRVs.add(3);
+		List<Double> realizations = new LinkedList<Double>();
+		realizations.add(1.);
+		
+		double expected = computeMarginalProbability(jpmf, 5000, bundle, null, null);
+		assertTrue( jpmf.getMarginalProbability(bundle, null, null) == expected );
+		
+		expected = computeMarginalProbability(jpmf, 5000, bundle, conditioningRVs, realizations);
+		MarginalQuery query = jpmf.compileQuery(bundle, conditioningRVs, realizations);
+		assertTrue( jpmf.getMarginalProbability(query) == expected );
+		assertTrue( query.equals(jpmf.compileQuery(Arrays.asList(2, 7), Arrays.asList(3), Arrays.asList(1.))) );
+	}
+	
+	@Test
+	public void testBatchMarginalProbabilities() 
+	{
+		Graph grid = createGrid(4, 4);
+		JointProbabilityMass jpmf = createJPMF(grid, 5000, 9L);
+		jpmf.update();
+		
+		List<List<Integer>> bundles = new LinkedList<List<Integer>>();
+		bundles.add(Arrays.asList(1));
+		bundles.add(Arrays.asList(1, 2, 3));
+		bundles.add(Arrays.asList(16, 11));
+		List<Integer> conditioningRVs = Arrays.asList(6);
+		List<Double> realizations = Arrays.asList(1.);
+		
+		List<Double> marginals = jpmf.getMarginalProbabilities(bundles, conditioningRVs, realizations);
+		for(int b = 0; b < bundles.size(); ++b)
+			assertTrue( marginals.get(b) == jpmf.getMarginalProbability(bundles.get(b), conditioningRVs, realizations) );
+		
+		jpmf.setNumberOfThreads(4);
+		marginals = jpmf.getMarginalProbabilities(bundles, conditioningRVs, realizations);
+		for(int b = 0; b < bundles.size(); ++b)
+			assertEquals( marginals.get(b), jpmf.getMarginalProbability(bundles.get(b), conditioningRVs, realizations), 1e-9 );
+	}
+	
+	@Test
+	public void testMarginalProbabilityCache() 
+	{
+		Graph grid = createGrid(4, 4);
+		JointProbabilityMass jpmf = createJPMF(grid, 2000, 11L);
+		jpmf.update();
+		MarginalProbabilityCache cache = jpmf.getMarginalProbabilityCache();
+		
+		double marginal = jpmf.getMarginalProbability(Arrays.asList(1, 2), Arrays.asList(3), Arrays.asList(1.));
+		assertTrue( cache.getNumberOfMisses() == 1 && cache.getNumberOfHits() == 0 );
+		assertTrue( jpmf.getMarginalProbability(Arrays.asList(2, 1), Arrays.asList(3), Arrays.asList(1.)) == marginal );
+		assertTrue( cache.getNumberOfHits() == 1 );
+		
+		marginal = jpmf.getMarginalProbability(Arrays.asList(1, 2), null, null);			//Different conditioning
+		assertTrue( cache.getNumberOfMisses() == 2 );
+		
+		double[] sample = new double[16];
+		jpmf.setSample(0, sample);														//Invalidates the cache
+		assertTrue( cache.size() == 0 );
+		assertTrue( jpmf.getMarginalProbability(Arrays.asList(1, 2), null, null) < marginal );
+		
+		jpmf.setCacheCapacity(1);
+		jpmf.getMarginalProbability(Arrays.asList(1), null, null);
+		jpmf.getMarginalProbability(Arrays.asList(2), null, null);
+		assertTrue( cache.size() == 1 );
+		
+		jpmf.setCacheCapacity(100);														//Concurrent hits
+		final MarginalQuery query = jpmf.compileQuery(Arrays.asList(3, 4), null, null);
+		final double expected = jpmf.getMarginalProbability(query);
+		long nHits = cache.getNumberOfHits();
+		double[] results = IntStream.range(0, 4000).parallel().mapToDouble(i -> jpmf.getMarginalProbability(query)).toArray();
+		for(double result : results)
+			assertTrue( result == expected );
+		assertTrue( cache.getNumberOfHits() == nHits + 4000 );
+	}
+	
+	@Test
+	public void testSampleIndex() 
+	{
+		Graph grid = createGrid(4, 4);
+		JointProbabilityMass jpmf = createJPMF(grid, 5000, 13L);
+		jpmf.setCacheCapacity(0);
+		jpmf.update();
+		
+		List<Integer> bundle = Arrays.asList(5, 6);
+		List<Integer> conditioningRVs = Arrays.asList(1, 2);
+		List<Double> realizations = Arrays.asList(1., jpmf.getSample(0)[1]);
+		double expected = jpmf.getMarginalProbability(bundle, conditioningRVs, realizations);
+		List<Double> expectedBatch = jpmf.getMarginalProbabilities(Arrays.asList(bundle, Arrays.asList(7)), conditioningRVs, realizations);
+		
+		jpmf.setUseSampleIndex(true);
+		assertTrue( jpmf.getMarginalProbability(bundle, conditioningRVs, realizations) == expected );
+		assertTrue( jpmf.getMarginalProbabilities(Arrays.asList(bundle, Arrays.asList(7)), conditioningRVs, realizations).equals(expectedBatch) );
+		assertTrue( Double.isNaN(jpmf.getMarginalProbability(bundle, conditioningRVs, Arrays.asList(1., 0.123))) );
+		
+		jpmf.update();																	//The index is rebuilt for new samples
+		jpmf.setUseSampleIndex(false);
+		expected = jpmf.getMarginalProbability(bundle, conditioningRVs, realizations);
+		jpmf.setUseSampleIndex(true);
+		assertTrue( jpmf.getMarginalProbability(bundle, conditioningRVs, realizations) == expected );
+	}
+	
+	@Test
+	public void testQuantizedSampleStorage() 
+	{
+		Graph grid = createGrid(4, 4);
+		JointProbabilityMass dense = createJPMF(grid, 3000, 17L);
+		JointProbabilityMass quantized = createJPMF(grid, 3000, 17L);
+		quantized.setSampleStorage(SampleStorage.QUANTIZED);
+		quantized.setNumberOfThreads(2);
+		dense.update();
+		quantized.update();
+		
+		for(int i = 0; i < 3000; ++i)
+			for(int j = 0; j < 16; ++j)
+				assertTrue( dense.getSample(i)[j] == quantized.getSample(i)[j] );
+		
+		List<Integer> bundle = Arrays.asList(1, 5, 6);
+		List<Integer> conditioningRVs = Arrays.asList(2);
+		List<Double> realizations = Arrays.asList(1.);
+		assertTrue( dense.getMarginalProbability(bundle, conditioningRVs, realizations) == quantized.getMarginalProbability(bundle, conditioningRVs, realizations) );
+		
+		QuantizedSampleStore unfilled = new QuantizedSampleStore(10, 16);					//Unfilled samples are zero-filled as dense ones
+		assertTrue( unfilled.getAvailability(9, 15) == 0. && unfilled.getNumberOfLevels() == 1 );
+		unfilled.setSample(0, dense.getSample(0));
+		for(int j = 0; j < 16; ++j)
+			assertTrue( unfilled.getSample(0)[j] == dense.getSample(0)[j] && unfilled.getSample(1)[j] == 0. );
+		
+		dense.setNumberOfSamples(3000);
+		quantized.setNumberOfSamples(3000);
+		assertTrue( dense.getMarginalProbability(bundle, null, null) == 0. );
+		assertTrue( quantized.getMarginalProbability(bundle, null, null) == 0. );
+	}
+	
+	@Test
+	public void testPersistentSamples() throws IOException
+	{
+		Graph grid = createGrid(4, 4);
+		JointProbabilityMass jpmf = createJPMF(grid, 1000, 19L);
+		jpmf.update();
+		
+		File file = File.createTempFile("jpmf", ".bin");
+		file.deleteOnExit();
+		jpmf.saveSamples(file.getPath());
+		
+		JointProbabilityMass loaded = new JointProbabilityMass(grid);
+		loaded.loadSamples(file.getPath());
+		assertTrue( new MappedSampleStore(file.getPath()).getSeed() == 19L );
+		for(int i = 0; i < 1000; ++i)
+			for(int j = 0; j < 16; ++j)
+				assertTrue( jpmf.getSample(i)[j] == loaded.getSample(i)[j] );
+		
+		List<Integer> bundle = Arrays.asList(3, 4, 8);
+		assertTrue( jpmf.getMarginalProbability(bundle, Arrays.asList(7), Arrays.asList(1.)) == loaded.getMarginalProbability(bundle, Arrays.asList(7), Arrays.asList(1.)) );
+		
+		loaded.saveSamples(file.getPath());												//Overwrites the file mapped by loaded
+		JointProbabilityMass reloaded = new JointProbabilityMass(grid);
+		reloaded.loadSamples(file.getPath());
+		for(int i = 0; i < 1000; ++i)
+			for(int j = 0; j < 16; ++j)
+				assertTrue( jpmf.getSample(i)[j] == reloaded.getSample(i)[j] && loaded.getSample(i)[j] == reloaded.getSample(i)[j] );
+		
+		JointProbabilityMass reference = createJPMF(grid, 1000, 0L);					//Loading keeps the generator of the jpmf
+		reference.setRandomGenerator(new XoroshiroRandomGenerator(29L));
+		reference.update();
+		JointProbabilityMass regenerated = createJPMF(grid, 1000, 0L);
+		regenerated.setRandomGenerator(new XoroshiroRandomGenerator(29L));
+		regenerated.loadSamples(file.getPath());
+		assertTrue( regenerated.getSeed() == 0L );
+		regenerated.update();
+		for(int i = 0; i < 1000; ++i)
+			for(int j = 0; j < 16; ++j)
+				assertTrue( reference.getSample(i)[j] == regenerated.getSample(i)[j] );
+	}
+	
+	@Test
+	public void testCopyOnWrite() 
+	{
+		Graph grid = createGrid(4, 4);
+		JointProbabilityMass jpmf = createJPMF(grid, 1000, 23L);
+		jpmf.update();
+		double[] sample0 = jpmf.getSample(0).clone();
+		double marginal = jpmf.getMarginalProbability(Arrays.asList(1, 2), null, null);
+		
+		JointProbabilityMass copy = jpmf.copyIt();
+		assertTrue( copy.getMarginalProbability(Arrays.asList(1, 2), null, null) == marginal );
+		
+		double[] damaged = new double[16];
+		copy.setSample(0, damaged);
+		assertTrue( copy.getSample(0)[0] == 0. );
+		for(int j = 0; j < 16; ++j)
+			assertTrue( jpmf.getSample(0)[j] == sample0[j] );
+		assertTrue( jpmf.getMarginalProbability(Arrays.asList(1, 2), null, null) == marginal );
+		
+		double[] sample1 = jpmf.getSample(1).clone();
+		JointProbabilityMass copyOfCopy = copy.copyIt();
+		jpmf.setSample(1, damaged);
+		assertTrue( copyOfCopy.getSample(0)[0] == 0. );
+		for(int j = 0; j < 16; ++j)
+			assertTrue( copy.getSample(1)[j] == sample1[j] && copyOfCopy.getSample(1)[j] == sample1[j] );
+		
+		copy.update();																	//Copies keep the bombing configuration
+		assertTrue( jpmf.getSample(0)[0] == sample0[0] );
+		
+		JointProbabilityMass twin = createJPMF(grid, 1000, 23L);						//Copies generate independent samples
+		jpmf.setRandomGenerator(new XoroshiroRandomGenerator(31L));
+		twin.setRandomGenerator(new XoroshiroRandomGenerator(31L));
+		JointProbabilityMass firstCopy = jpmf.copyIt();
+		JointProbabilityMass secondCopy = jpmf.copyIt();
+		JointProbabilityMass twinCopy = twin.copyIt();
+		firstCopy.update();
+		secondCopy.update();
+		twinCopy.update();
+		boolean isIndependent = false;
+		for(int i = 0; i < 1000; ++i)
+			for(int j = 0; j < 16; ++j)
+			{
+				isIndependent |= firstCopy.getSample(i)[j] != secondCopy.getSample(i)[j];
+				assertTrue( firstCopy.getSample(i)[j] == twinCopy.getSample(i)[j] );	//The generator of the original is split
+			}
+		assertTrue( isIndependent );
+	}
+	
+	/**
+	 * The test checks that sparse samples are the same as dense ones.
+	 */
+	@Test
+	public void testSparseSampleStorage() 
+	{
+		Graph grid = createGrid(5, 5);
+		JointProbabilityMass dense = createJPMF(grid, 3000, 23L);
+		JointProbabilityMass sparse = createJPMF(grid, 3000, 23L);
+		sparse.setSampleStorage(SampleStorage.SPARSE);
+		sparse.setNumberOfThreads(2);
+		dense.update();
+		sparse.update();
+		
+		for(int i = 0; i < 3000; ++i)
+			for(int j = 0; j < 25; ++j)
+				assertTrue( dense.getSample(i)[j] == sparse.getSample(i)[j] );
+		
+		List<Integer> bundle = Arrays.asList(1, 6, 7);
+		List<Integer> conditioningRVs = Arrays.asList(2, 12);
+		List<Double> realizations = Arrays.asList(1., 1.);
+		assertTrue( dense.getMarginalProbability(bundle, conditioningRVs, realizations) == sparse.getMarginalProbability(bundle, conditioningRVs, realizations) );
+		assertTrue( dense.getMarginalProbability(bundle, new LinkedList<Integer>(), new LinkedList<Double>()) == sparse.getMarginalProbability(bundle, new LinkedList<Integer>(), new LinkedList<Double>()) );
+		
+		SparseSampleStore store = new SparseSampleStore(1, 4);
+		store.setSample(0, new double[]{1., 0.5, 1., 0.});
+		assertTrue( store.getNumberOfDamagedRandomVars(0) == 2 );
+		assertEquals( store.getAvailability(0, 3), 0., 1e-12 );
+		assertEquals( store.computeAvailability(0, new int[]{0, 1}), 0.5, 1e-12 );
+		assertEquals( store.computeAvailability(0, new int[]{0, 2}), 1., 1e-12 );
+	}
+	
+	/**
+	 * The test checks that bombs applied over the CSR snapshot of the dependency graph are the same as bombs applied
+	 * by walking adjacency lists of the graph.
+	 */
+	@Test
+	public void testFocusedBombingStrategy() 
+	{
+		Graph grid = createGrid(6, 7);
+		FocusedBombingStrategy bomb = new FocusedBombingStrategy(grid, 1., 0.35, 0.15);
+		IRandomGenerator generator = new XoroshiroRandomGenerator(5L);
+		
+		double[] sample = new double[42];
+		double[] expected = new double[42];
+		Arrays.fill(sample, 1.);
+		Arrays.fill(expected, 1.);
+		for(int k = 0; k < 200; ++k)
+		{
+			int nodeToBomb = generator.nextInt(42);
+			sample = bomb.applyBomb(sample, nodeToBomb);
+			
+			expected[nodeToBomb] -= 0.35;
+			List<VertexCell> itsNeighbors = grid.getAdjacencyLists().get(nodeToBomb);
+			for(int i = 0; i < itsNeighbors.size(); ++i)
+				expected[itsNeighbors.get(i)._v.getID()-1] = Math.max(0., expected[itsNeighbors.get(i)._v.getID()-1] - 0.15);
+			
+			for(int j = 0; j < 42; ++j)
+				assertTrue( sample[j] == expected[j] );
+			assertTrue( bomb.getAffectedNodesTo(nodeToBomb) - bomb.getAffectedNodesFrom(nodeToBomb) == itsNeighbors.size() );
+			for(int i = 0; i < itsNeighbors.size(); ++i)
+				assertTrue( bomb.getAffectedNodes()[bomb.getAffectedNodesFrom(nodeToBomb) + i] == itsNeighbors.get(i)._v.getID()-1 );
+		}
+	}
+	
+	/**
+	 * The test checks that samples generated using batch bombing are the same as samples generated one by one.
+	 */
+	@Test
+	public void testBatchBombing() 
+	{
+		Graph grid = createGrid(6, 6);
+		JointProbabilityMass batch = createJPMF(grid, 1000, 29L);
+		JointProbabilityMass oneByOne = createJPMF(grid, 1000, 29L);
+		
+		List<IBombingStrategy> bombs = new LinkedList<IBombingStrategy>();
+		for(IBombingStrategy bomb : batch.getBombs())
+			bombs.add( (sample, nodeToBomb) -> bomb.applyBomb(sample, nodeToBomb) );	//Does not support batch bombing
+		oneByOne.setBombs(bombs, Arrays.asList(0.5, 0.5));
+		
+		batch.setNumberOfThreads(2);
+		batch.update();
+		oneByOne.update();
+		for(int i = 0; i < 1000; ++i)
+			for(int j = 0; j < 36; ++j)
+				assertTrue( batch.getSample(i)[j] == oneByOne.getSample(i)[j] );
+		
+		IBombingStrategy bomb = (sample, nodeToBomb) -> { sample[nodeToBomb] -= 0.5; return sample; };
+		double[] block = new double[]{1., 1., 1., 1., 1., 1.};
+		bomb.applyBombs(block, 3, new int[]{1, 0}, new int[]{2, 1}, 2, new XoroshiroRandomGenerator(1L));
+		assertTrue( block[0] == 1. && block[1] == 0.5 && block[2] == 1. );
+		assertTrue( block[3] == 1. && block[4] == 1. && block[5] == 0.5 );
+	}
+	
+	/**
+	 * The test checks rings of a radius-k bomb on a grid (where the distance in hops is the Manhattan distance) and
+	 * that sparse and dense samples bombed by radius-k bombs are the same.
+	 */
+	@Test
+	public void testRadiusBombingStrategy() 
+	{
+		int nRows = 7;
+		int nCols = 6;
+		Graph grid = createGrid(nRows, nCols);
+		RadiusBombingStrategy bomb = new RadiusBombingStrategy(grid, 1., new double[]{0.5, 0.3, 0.1});
+		assertTrue( bomb.getRadius() == 2 );
+		
+		for(int node = 0; node < nRows * nCols; ++node)
+		{
+			int nAffectedNodes = 0;
+			for(int h = 0; h <= 2; ++h)
+			{
+				int[] ring = bomb.getRing(node, h);
+				for(int other : ring)
+					assertTrue( Math.abs(other / nCols - node / nCols) + Math.abs(other % nCols - node % nCols) == h );
+				for(int other = 0; other < nRows * nCols; ++other)
+					if( Math.abs(other / nCols - node / nCols) + Math.abs(other % nCols - node % nCols) == h )
+						nAffectedNodes += 1;
+			}
+			assertTrue( bomb.getAffectedNodesTo(node) - bomb.getAffectedNodesFrom(node) == nAffectedNodes );
+			assertTrue( bomb.getAffectedNodes()[bomb.getAffectedNodesFrom(node)] == node );
+			
+			double[] sample = new double[nRows * nCols];
+			Arrays.fill(sample, 1.);
+			sample = bomb.applyBomb(bomb.applyBomb(sample, node), node);
+			for(int other = 0; other < nRows * nCols; ++other)
+			{
+				int distance = Math.abs(other / nCols - node / nCols) + Math.abs(other % nCols - node % nCols);
+				double expected = distance == 0 ? 0. : distance == 1 ? 1. - 0.6 : distance == 2 ? 1. - 0.2 : 1.;
+				assertEquals( sample[other], expected, 1e-12 );
+			}
+		}
+		
+		List<IBombingStrategy> bombs = new LinkedList<IBombingStrategy>();
+		bombs.add(bomb);
+		bombs.add(new FocusedBombingStrategy(grid, 1., 0.2, 0.1));
+		JointProbabilityMass dense = createJPMF(grid, 1000, 31L);
+		JointProbabilityMass sparse = createJPMF(grid, 1000, 31L);
+		dense.setBombs(bombs, Arrays.asList(0.3, 0.7));
+		sparse.setBombs(bombs, Arrays.asList(0.3, 0.7));
+		sparse.setSampleStorage(SampleStorage.SPARSE);
+		dense.update();
+		sparse.update();
+		for(int i = 0; i < 1000; ++i)
+			for(int j = 0; j < nRows * nCols; ++j)
+				assertTrue( dense.getSample(i)[j] == sparse.getSample(i)[j] );
+	}
+	
+	/**
+	 * The test checks that bombs explode with the specified probabilities and that duds are resolved in the same
+	 * way by all sampling paths.
+	 */
+	@Test
+	public void testProbabilityToExplode() 
+	{
+		Graph grid = createGrid(5, 5);
+		List<IBombingStrategy> bombs = new LinkedList<IBombingStrategy>();
+		bombs.add(new FocusedBombingStrategy(grid, 0.3, 0.4, 0.3));
+		bombs.add(new RadiusBombingStrategy(grid, 0., new double[]{0.5, 0.2}));
+		assertEquals( bombs.get(0).getProbabilityToExplode(), 0.3, 1e-12 );
+		
+		List<IBombingStrategy> oneByOneBombs = new LinkedList<IBombingStrategy>();
+		for(IBombingStrategy bomb : bombs)
+			oneByOneBombs.add( new IBombingStrategy() {									//Does not support batch bombing
+				public double[] applyBomb(double[] sample, int nodeToBomb) { return bomb.applyBomb(sample, nodeToBomb); }
+				public double getProbabilityToExplode() { return bomb.getProbabilityToExplode(); }
+			});
+		
+		JointProbabilityMass batch = createJPMF(grid, 5000, 37L);
+		JointProbabilityMass oneByOne = createJPMF(grid, 5000, 37L);
+		JointProbabilityMass sparse = createJPMF(grid, 5000, 37L);
+		batch.setBombs(bombs, Arrays.asList(0.5, 0.5));
+		oneByOne.setBombs(oneByOneBombs, Arrays.asList(0.5, 0.5));
+		sparse.setBombs(bombs, Arrays.asList(0.5, 0.5));
+		sparse.setSampleStorage(SampleStorage.SPARSE);
+		batch.setNumberOfBombsToThrow(1);
+		oneByOne.setNumberOfBombsToThrow(1);
+		sparse.setNumberOfBombsToThrow(1);
+		batch.update();
+		oneByOne.update();
+		sparse.update();
+		
+		int nUndamagedSamples = 0;
+		for(int i = 0; i < 5000; ++i)
+		{
+			boolean isDamaged = false;
+			for(int j = 0; j < 25; ++j)
+			{
+				assertTrue( batch.getSample(i)[j] == oneByOne.getSample(i)[j] );
+				assertTrue( batch.getSample(i)[j] == sparse.getSample(i)[j] );
+				isDamaged |= batch.getSample(i)[j] != 1.;
+			}
+			nUndamagedSamples += isDamaged ? 0 : 1;
+		}
+		assertEquals( nUndamagedSamples / 5000., 1. - 0.5 * 0.3, 0.03 );				//The radius bomb never explodes
+	}
+	
+	/**
+	 * The test checks that adaptive estimation appends samples until the requested precision is reached and that
+	 * the estimate is consistent with the marginal probability computed over all samples.
+	 */
+	@Test
+	public void testAdaptiveEstimation() 
+	{
+		Graph grid = createGrid(4, 4);
+		JointProbabilityMass jpmf = createJPMF(grid, 300, 41L);
+		jpmf.setNumberOfThreads(2);
+		jpmf.update();
+		double[] firstSample = Arrays.copyOf(jpmf.getSample(7), 16);
+		
+		List<Integer> bundle = Arrays.asList(1, 2, 6);
+		List<Integer> conditioningRVs = Arrays.asList(16);
+		List<Double> realizations = Arrays.asList(1.);
+		double marginal = jpmf.getMarginalProbability(bundle, conditioningRVs, realizations);
+		MarginalEstimate privateEstimate = jpmf.estimateMarginalProbability(bundle, conditioningRVs, realizations, 0.005, 1000000);
+		assertTrue( privateEstimate.getHalfWidth() <= 0.005 && privateEstimate.getNumberOfSamples() > 300 );
+		assertTrue( jpmf.getMarginalProbability(bundle, conditioningRVs, realizations) == marginal );	//Samples of the jpmf are not changed
+		jpmf.setCacheCapacity(0);
+		assertTrue( jpmf.getMarginalProbability(bundle, conditioningRVs, realizations) == marginal );
+		jpmf.setCacheCapacity(100);
+		
+		MarginalEstimate estimate = jpmf.estimateMarginalProbability(bundle, conditioningRVs, realizations, 0.005, 1000000, true);
+		assertTrue( estimate.getHalfWidth() <= 0.005 );
+		assertTrue( estimate.getNumberOfSamples() > 300 );
+		assertEquals( estimate.getValue(), jpmf.getMarginalProbability(bundle, conditioningRVs, realizations), 1e-9 );
+		for(int j = 0; j < 16; ++j)
+			assertTrue( jpmf.getSample(7)[j] == firstSample[j] );							//Existing samples are kept
+		
+		MarginalEstimate coarseEstimate = jpmf.estimateMarginalProbability(bundle, conditioningRVs, realizations, 0.05, 1000000);
+		assertTrue( coarseEstimate.getNumberOfSamples() == estimate.getNumberOfSamples() );	//No new samples needed
+		assertEquals( coarseEstimate.getValue(), estimate.getValue(), 1e-9 );
+		
+		MarginalEstimate cappedEstimate = createJPMF(grid, 0, 41L).estimateMarginalProbability(bundle, conditioningRVs, realizations, 1e-6, 1000);
+		assertTrue( cappedEstimate.getHalfWidth() > 1e-6 );
+		assertTrue( cappedEstimate.getNumberOfSamples() <= 1000 );
+		assertEquals( cappedEstimate.getValue(), estimate.getValue(), 0.05 );
+		assertEquals( privateEstimate.getValue(), estimate.getValue(), 0.02 );
+		
+		jpmf.setSamplingScheme(SamplingScheme.STRATIFIED);									//Samples are not i.i.d.
+		boolean isRejected = false;
+		try
+		{
+			jpmf.estimateMarginalProbability(bundle, conditioningRVs, realizations, 0.005, 1000000);
+		}
+		catch(RuntimeException e)
+		{
+			isRejected = true;
+		}
+		assertTrue( isRejected );
+	}
+	
+	/**
+	 * The test checks that streamed estimates do not depend on the number of threads and agree with estimates
+	 * computed over stored samples.
+	 */
+	@Test
+	public void testStreamingEstimation() 
+	{
+		Graph grid = createGrid(4, 4);
+		List<List<Integer>> bundles = Arrays.asList(Arrays.asList(1, 2), Arrays.asList(6), Arrays.asList(3, 7, 11));
+		List<Integer> conditioningRVs = Arrays.asList(16);
+		List<Double> realizations = Arrays.asList(1.);
+		
+		JointProbabilityMass sequential = createJPMF(grid, 0, 43L);
+		JointProbabilityMass parallel = createJPMF(grid, 0, 43L);
+		parallel.setNumberOfThreads(3);
+		List<MarginalEstimate> estimates = sequential.streamMarginalProbabilities(bundles, conditioningRVs, realizations, 100000);
+		List<MarginalEstimate> parallelEstimates = parallel.streamMarginalProbabilities(bundles, conditioningRVs, realizations, 100000);
+		
+		JointProbabilityMass stored = createJPMF(grid, 100000, 43L);
+		stored.update();
+		List<Double> marginals = stored.getMarginalProbabilities(bundles, conditioningRVs, realizations);
+		for(int b = 0; b < bundles.size(); ++b)
+		{
+			assertTrue( estimates.get(b).getValue() == parallelEstimates.get(b).getValue() );
+			assertTrue( estimates.get(b).getHalfWidth() == parallelEstimates.get(b).getHalfWidth() );
+			assertTrue( estimates.get(b).getHalfWidth() < 0.01 );
+			assertEquals( estimates.get(b).getValue(), marginals.get(b), 0.01 );
+			assertTrue( estimates.get(b).getNumberOfSamples() == estimates.get(0).getNumberOfSamples() );
+		}
+		assertTrue( sequential.streamMarginalProbabilities(new LinkedList<List<Integer>>(), conditioningRVs, realizations, 1000).isEmpty() );
+	}
+	
+	/**
+	 * The test checks that stratified and quasi-Monte Carlo sampling give unbiased estimates with smaller variance
+	 * than plain Monte Carlo sampling.
+	 */
+	@Test
+	public void testSamplingSchemes() 
+	{
+		Graph grid = createGrid(5, 5);
+		List<Integer> bundle = Arrays.asList(7, 8, 13);
+		int nReplicas = 30;
+		
+		double[] means = new double[SamplingScheme.values().length];
+		double[] variances = new double[SamplingScheme.values().length];
+		for(SamplingScheme scheme : SamplingScheme.values())
+		{
+			double sum = 0.;
+			double sumOfSquares = 0.;
+			for(int k = 0; k < nReplicas; ++k)
+			{
+				JointProbabilityMass jpmf = createJPMF(grid, 2000, 1000L + k);
+				jpmf.setSamplingScheme(scheme);
+				jpmf.update();
+				double marginal = jpmf.getMarginalProbability(bundle, new LinkedList<Integer>(), new LinkedList<Double>());
+				sum += marginal;
+				sumOfSquares += marginal * marginal;
+			}
+			means[scheme.ordinal()] = sum / nReplicas;
+			variances[scheme.ordinal()] = (sumOfSquares - sum * sum / nReplicas) / (nReplicas - 1);
+		}
+		
+		assertEquals( means[SamplingScheme.STRATIFIED.ordinal()], means[SamplingScheme.MONTE_CARLO.ordinal()], 0.005 );
+		assertEquals( means[SamplingScheme.QUASI_MONTE_CARLO.ordinal()], means[SamplingScheme.MONTE_CARLO.ordinal()], 0.005 );
+		assertTrue( variances[SamplingScheme.STRATIFIED.ordinal()] < variances[SamplingScheme.MONTE_CARLO.ordinal()] );
+		assertTrue( variances[SamplingScheme.QUASI_MONTE_CARLO.ordinal()] < variances[SamplingScheme.STRATIFIED.ordinal()] );
+		
+		JointProbabilityMass sequential = createJPMF(grid, 1000, 47L);					//QMC samples do not depend on threads
+		JointProbabilityMass parallel = createJPMF(grid, 1000, 47L);
+		sequential.setSamplingScheme(SamplingScheme.QUASI_MONTE_CARLO);
+		parallel.setSamplingScheme(SamplingScheme.QUASI_MONTE_CARLO);
+		parallel.setNumberOfThreads(3);
+		sequential.update();
+		parallel.update();
+		for(int i = 0; i < 1000; ++i)
+			for(int j = 0; j < 25; ++j)
+				assertTrue( sequential.getSample(i)[j] == parallel.getSample(i)[j] );
+		
+		HaltonSequence sequence = new HaltonSequence(3, new XoroshiroRandomGenerator(3L));
+		double[] coordinates = new double[3];
+		for(int i = 0; i < 1000; ++i)
+			for(int d = 0; d < 3; ++d)
+			{
+				double u = sequence.get(i, d);
+				assertTrue( u >= 0. && u < 1. );
+				coordinates[d] += u / 1000;
+			}
+		for(int d = 0; d < 3; ++d)
+			assertEquals( coordinates[d], 0.5, 0.01 );
+		
+		HaltonSequence scrambled = new HaltonSequence(22, new XoroshiroRandomGenerator(3L));	//Bases 73 and 79 are not correlated
+		double[] sums = new double[5];
+		for(int i = 0; i < 70; ++i)
+		{
+			double u = scrambled.get(i, 20);
+			double v = scrambled.get(i, 21);
+			sums[0] += u;
+			sums[1] += v;
+			sums[2] += u * u;
+			sums[3] += v * v;
+			sums[4] += u * v;
+		}
+		double correlation = (sums[4] - sums[0] * sums[1] / 70) / Math.sqrt( (sums[2] - sums[0] * sums[0] / 70) * (sums[3] - sums[1] * sums[1] / 70) );
+		assertTrue( Math.abs(correlation) < 0.5 );
+	}
+	
+	/**
+	 * The test checks that importance sampling of a rare conditioning event agrees with brute-force sampling while
+	 * accepting many more samples, and that plain estimates of unsatisfiable conditioning are NaN.
+	 */
+	@Test
+	public void testImportanceSampling() 
+	{
+		Graph grid = createGrid(5, 5);
+		List<Integer> bundle = Arrays.asList(12, 14, 18);
+		List<Integer> conditioningRVs = Arrays.asList(13, 1, 25);
+		List<Double> realizations = Arrays.asList(1. - 0.4, 1., 1.);					//The 13th RV is the epicenter of the 1st bomb
+		
+		JointProbabilityMass bruteForce = createJPMF(grid, 400000, 53L);
+		bruteForce.setNumberOfThreads(2);
+		bruteForce.update();
+		double expected = bruteForce.getMarginalProbability(bundle, conditioningRVs, realizations);
+		int nAcceptedSamples = 0;
+		for(int i = 0; i < 400000; ++i)
+			nAcceptedSamples += bruteForce.getSample(i)[12] == 1. - 0.4 && bruteForce.getSample(i)[0] == 1. && bruteForce.getSample(i)[24] == 1. ? 1 : 0;
+		
+		JointProbabilityMass jpmf = createJPMF(grid, 0, 59L);
+		MarginalEstimate estimate = jpmf.estimateConditionalMarginalProbability(bundle, conditioningRVs, realizations, 20000);
+		assertEquals( estimate.getValue(), expected, 0.02 );
+		assertTrue( estimate.getHalfWidth() < 0.02 );
+		assertTrue( estimate.getEffectiveSampleSize() / 20000. > 2 * nAcceptedSamples / 400000. );
+		assertTrue( estimate.getEffectiveSampleSize() > 0 && estimate.getEffectiveSampleSize() <= estimate.getNumberOfSamples() + 1e-6 );
+		
+		JointProbabilityMass parallel = createJPMF(grid, 0, 59L);
+		parallel.setNumberOfThreads(3);
+		assertTrue( parallel.estimateConditionalMarginalProbability(bundle, conditioningRVs, realizations, 20000).getValue() == estimate.getValue() );
+		
+		bruteForce.setNumberOfSamples(100);
+		bruteForce.update();
+		assertTrue( Double.isNaN(bruteForce.getMarginalProbability(bundle, conditioningRVs, Arrays.asList(0.123, 1., 1.))) );
+		assertTrue( Double.isNaN(bruteForce.getMarginalProbabilities(Arrays.asList(bundle), conditioningRVs, Arrays.asList(0.123, 1., 1.)).get(0)) );
+	}
+	
+	/**
+	 * The test checks the exact jpmf against the sampled one and the fallback to sampling.
+	 */
+	@Test
+	public void testExactJointProbabilityMass() 
+	{
+		Graph grid = createGrid(3, 3);
+		List<IBombingStrategy> bombs = new LinkedList<IBombingStrategy>();
+		bombs.add(new FocusedBombingStrategy(grid, 0.8, 0.4, 0.3));
+		bombs.add(new FocusedBombingStrategy(grid, 1., 0.2, 0.1));
+		
+		IJointProbabilityMass exact = new ExactJointProbabilityMass(grid);
+		exact.setNumberOfBombsToThrow(2);
+		exact.setBombs(bombs, Arrays.asList(0.5, 0.5));
+		exact.update();
+		assertTrue( ((ExactJointProbabilityMass)exact).isExact() );
+		
+		JointProbabilityMass sampled = createJPMF(grid, 400000, 61L);
+		sampled.setNumberOfBombsToThrow(2);
+		sampled.setBombs(bombs, Arrays.asList(0.5, 0.5));
+		sampled.setNumberOfThreads(2);
+		sampled.update();
+		
+		List<List<Integer>> bundles = Arrays.asList(Arrays.asList(1, 2), Arrays.asList(5), Arrays.asList(3, 6, 9));
+		List<Integer> conditioningRVs = Arrays.asList(7);
+		List<Double> realizations = Arrays.asList(1.);
+		List<Double> exactMarginals = exact.getMarginalProbabilities(bundles, conditioningRVs, realizations);
+		List<Double> sampledMarginals = sampled.getMarginalProbabilities(bundles, conditioningRVs, realizations);
+		for(int b = 0; b < bundles.size(); ++b)
+			assertEquals( exactMarginals.get(b), sampledMarginals.get(b), 0.005 );
+		assertEquals( exact.getMarginalProbability(Arrays.asList(5), new LinkedList<Integer>(), new LinkedList<Double>()), 
+					  sampled.getMarginalProbability(Arrays.asList(5), new LinkedList<Integer>(), new LinkedList<Double>()), 0.005 );
+		assertTrue( Double.isNaN(exact.getMarginalProbability(Arrays.asList(5), conditioningRVs, Arrays.asList(0.123))) );
+		
+		ExactJointProbabilityMass fallback = new ExactJointProbabilityMass(grid);
+		fallback.setNumberOfBombsToThrow(2);
+		fallback.setBombs(bombs, Arrays.asList(0.5, 0.5));
+		fallback.setMaxNumberOfStates(10);
+		fallback.setNumberOfSamples(100000);
+		fallback.setSeed(67L);
+		fallback.update();
+		assertTrue( !fallback.isExact() );
+		assertEquals( fallback.getMarginalProbability(bundles.get(0), conditioningRVs, realizations), exactMarginals.get(0), 0.01 );
+	}
+	
+	/**
+	 * Reference implementation of a marginal probability query.
+	 */
+	private double computeMarginalProbability(JointProbabilityMass jpmf, int nSamples, List<Integer> bundle, List<Integer> conditioningRVs, List<Double> realizationsOfRVs)
+	{
+		double marginalProbability = 0.;
+		int numberOfSamples = 0;
+		for(int i = 0; i < nSamples; ++i)
+		{
+			double[] sample = jpmf.getSample(i);
+			boolean isConditioningSatisfied = true;
+			for(int j = 0; conditioningRVs != null && j < conditioningRVs.size(); ++j)
+				if( sample[conditioningRVs.get(j) - 1] != realizationsOfRVs.get(j) )
+					isConditioningSatisfied = false;
+			
+			double minAvailability = Double.MAX_VALUE;
+			for(int j = 0; j < sample.length; ++j)
+				if( bundle.contains(j+1) && sample[j] < minAvailability )
+					minAvailability = sample[j];
+			
+			if( isConditioningSatisfied )
+			{
+				marginalProbability += minAvailability;
+				numberOfSamples += 1;
+			}
+		}
+		return marginalProbability / numberOfSamples;
+	}
+	
+	/**
+	 * The test checks that column-major samples and marginals are the same as dense ones.
+	 */
+	@Test
+	public void testColumnMajorSampleStorage() 
+	{
+		Graph grid = createGrid(5, 5);
+		JointProbabilityMass dense = createJPMF(grid, 3000, 29L);
+		JointProbabilityMass columnMajor = createJPMF(grid, 3000, 29L);
+		columnMajor.setSampleStorage(SampleStorage.COLUMN_MAJOR);
+		columnMajor.setNumberOfThreads(2);
+		dense.update();
+		columnMajor.update();
+		
+		for(int i = 0; i < 3000; ++i)
+			for(int j = 0; j < 25; ++j)
+				assertTrue( dense.getSample(i)[j] == columnMajor.getSample(i)[j] );
+		
+		List<Integer> bundle = Arrays.asList(1, 6, 7);
+		List<Integer> conditioningRVs = Arrays.asList(2, 12);
+		List<Double> realizations = Arrays.asList(1., 1.);
+		assertTrue( dense.getMarginalProbability(bundle, conditioningRVs, realizations) == columnMajor.getMarginalProbability(bundle, conditioningRVs, realizations) );
+		assertTrue( dense.getMarginalProbability(bundle, new LinkedList<Integer>(), new LinkedList<Double>()) == columnMajor.getMarginalProbability(bundle, new LinkedList<Integer>(), new LinkedList<Double>()) );
+		
+		ColumnMajorSampleStore store = new ColumnMajorSampleStore(3, 2);
+		store.setSamples(0, new double[]{1., 0.5, 0.2, 1., 0., 0.7}, 3);
+		assertEquals( store.getAvailability(1, 0), 0.2, 1e-12 );
+		double[] availabilities = new double[3];
+		store.computeAvailabilities(0, 3, new int[]{0, 1}, availabilities);
+		assertEquals( availabilities[0], 0.5, 1e-12 );
+		assertEquals( availabilities[1], 0.2, 1e-12 );
+		assertEquals( availabilities[2], 0., 1e-12 );
+		boolean[] isSatisfied = new boolean[3];
+		store.checkSatisfied(0, 3, new int[]{1}, new double[]{1.}, isSatisfied);
+		assertTrue( !isSatisfied[0] && isSatisfied[1] && !isSatisfied[2] );
+	}
+	
+	/**
+	 * The test checks that parallel evaluation of marginal probabilities does not depend on the number of threads and
+	 * agrees with sequential evaluation.
+	 */
+	@Test
+	public void testParallelMarginalProbability() 
+	{
+		Graph grid = createGrid(4, 4);
+		JointProbabilityMass sequential = createJPMF(grid, 5000, 13L);
+		JointProbabilityMass parallel = createJPMF(grid, 5000, 13L);
+		JointProbabilityMass threaded = createJPMF(grid, 5000, 13L);
+		parallel.setParallelQueryThreshold(1000);
+		threaded.setParallelQueryThreshold(1000);
+		threaded.setNumberOfThreads(3);
+		sequential.update();
+		parallel.update();
+		threaded.update();
+		
+		List<Integer> bundle = Arrays.asList(1, 2, 6);
+		List<Integer> conditioningRVs = Arrays.asList(7);
+		List<Double> realizations = Arrays.asList(1.);
+		double expected = computeMarginalProbability(sequential, 5000, bundle, conditioningRVs, realizations);
+		assertEquals( sequential.getMarginalProbability(bundle, conditioningRVs, realizations), expected, 1e-12 );
+		assertEquals( parallel.getMarginalProbability(bundle, conditioningRVs, realizations), expected, 1e-12 );
+		assertTrue( threaded.getMarginalProbability(bundle, conditioningRVs, realizations) == parallel.getMarginalProbability(bundle, conditioningRVs, realizations) );
+		
+		List<List<Integer>> bundles = Arrays.asList(Arrays.asList(3), bundle);
+		assertTrue( parallel.getMarginalProbabilities(bundles, conditioningRVs, realizations).get(1) == parallel.getMarginalProbability(bundle, conditioningRVs, realizations) );
+		expected = computeMarginalProbability(sequential, 5000, Arrays.asList(3), conditioningRVs, realizations);
+		assertEquals( threaded.getMarginalProbabilities(bundles, conditioningRVs, realizations).get(0), expected, 1e-12 );
+	}
+	
+	/**
+	 * The test checks that generation of samples, cache lookups and evaluation of marginals are reported to metrics.
+	 */
+	@Test
+	public void testSamplingMetrics() 
+	{
+		final long[] counters = new long[6];
+		ISamplingMetrics metrics = new ISamplingMetrics()
+		{
+			@Override
+			public void samplesGenerated(int numberOfSamples, long numberOfExplodedBombs, long elapsedNanos) 
+			{
+				counters[0] += numberOfSamples;
+				counters[1] += numberOfExplodedBombs;
+			}
+			
+			@Override
+			public void cacheAccessed(MarginalQuery query, boolean isHit) 
+			{
+				counters[isHit ? 2 : 3] += 1;
+			}
+			
+			@Override
+			public void marginalsEvaluated(MarginalQuery[] queries, int numberOfSamples, int numberOfAcceptedSamples, long elapsedNanos) 
+			{
+				counters[4] += numberOfSamples;
+				counters[5] += numberOfAcceptedSamples;
+			}
+		};
+		
+		Graph grid = createGrid(4, 4);
+		JointProbabilityMass jpmf = createJPMF(grid, 1000, 17L);
+		jpmf.setSamplingMetrics(metrics);
+		jpmf.update();
+		assertTrue( counters[0] == 1000 );
+		assertTrue( counters[1] == 3000 );
+		
+		List<Integer> bundle = Arrays.asList(1, 2);
+		List<Integer> conditioningRVs = Arrays.asList(6);
+		List<Double> realizations = Arrays.asList(1.);
+		jpmf.getMarginalProbability(bundle, conditioningRVs, realizations);
+		jpmf.getMarginalProbability(bundle, conditioningRVs, realizations);
+		assertTrue( counters[2] == 1 && counters[3] == 1 );
+		assertTrue( counters[4] == 1000 );
+		
+		int nAccepted = 0;
+		for(int i = 0; i < 1000; ++i)
+			nAccepted += jpmf.getSample(i)[5] == 1. ? 1 : 0;
+		assertTrue( counters[5] == nAccepted );
+		
+		List<IBombingStrategy> bombs = new LinkedList<IBombingStrategy>();						//Only bombs which exploded are counted
+		bombs.add(new FocusedBombingStrategy(grid, 0.5, 0.4, 0.3));
+		jpmf.setBombs(bombs, Arrays.asList(1.));
+		jpmf.setNumberOfBombsToThrow(1);
+		counters[0] = counters[1] = 0;
+		jpmf.update();
+		int nDamagedSamples = 0;
+		for(int i = 0; i < 1000; ++i)
+		{
+			boolean isDamaged = false;
+			for(int j = 0; j < 16; ++j)
+				isDamaged |= jpmf.getSample(i)[j] != 1.;
+			nDamagedSamples += isDamaged ? 1 : 0;
+		}
+		assertTrue( counters[0] == 1000 );
+		assertTrue( counters[1] == nDamagedSamples );
+		
+		counters[1] = 0;
+		jpmf.streamMarginalProbabilities(Arrays.asList(bundle), conditioningRVs, realizations, 1000);
+		assertTrue( counters[1] > 300 && counters[1] < 700 );
+		
+		counters[1] = 0;
+		jpmf.estimateConditionalMarginalProbability(bundle, conditioningRVs, realizations, 1000);
+		assertTrue( counters[1] > 0 && counters[1] < 1000 );
+	}
+	
+	/**
+	 * The test checks that lazily generated samples are the same as eagerly generated ones, that accessing a
+	 * sample generates only its block and that setters do not generate stale samples.
+	 */
+	@Test
+	public void testLazyGeneration() 
+	{
+		final int[] nGeneratedSamples = new int[1];
+		ISamplingMetrics metrics = new NoOpSamplingMetrics()
+		{
+			@Override
+			public void samplesGenerated(int numberOfSamples, long numberOfExplodedBombs, long elapsedNanos) 
+			{
+				nGeneratedSamples[0] += numberOfSamples;
+			}
+		};
+		
+		Graph grid = createGrid(4, 4);
+		JointProbabilityMass eager = createJPMF(grid, 3000, 31L);
+		JointProbabilityMass lazy = createJPMF(grid, 3000, 31L);
+		lazy.setLazyGeneration(true);
+		lazy.setSamplingMetrics(metrics);
+		eager.update();
+		lazy.update();
+		assertTrue( nGeneratedSamples[0] == 0 );
+		
+		for(int j = 0; j < 16; ++j)
+			assertTrue( lazy.getSample(1000)[j] == eager.getSample(1000)[j] );
+		assertTrue( nGeneratedSamples[0] == 256 );
+		
+		List<Integer> bundle = Arrays.asList(1, 2);
+		List<Integer> conditioningRVs = Arrays.asList(6);
+		List<Double> realizations = Arrays.asList(1.);
+		assertTrue( lazy.getMarginalProbability(bundle, conditioningRVs, realizations) == eager.getMarginalProbability(bundle, conditioningRVs, realizations) );
+		assertTrue( nGeneratedSamples[0] == 3000 );
+		for(int i = 0; i < 3000; ++i)
+			for(int j = 0; j < 16; ++j)
+				assertTrue( lazy.getSample(i)[j] == eager.getSample(i)[j] );
+		
+		lazy.setNumberOfThreads(3);								//Stale blocks generated in parallel
+		eager.update();
+		lazy.update();
+		lazy.getSample(0);
+		assertTrue( lazy.getMarginalProbability(bundle, conditioningRVs, realizations) == eager.getMarginalProbability(bundle, conditioningRVs, realizations) );
+		assertTrue( nGeneratedSamples[0] == 6000 );
+		
+		JointProbabilityMass eagerQMC = createJPMF(grid, 1000, 5L);						//Streaming does not affect stale samples
+		JointProbabilityMass lazyQMC = createJPMF(grid, 1000, 5L);
+		eagerQMC.setSamplingScheme(SamplingScheme.QUASI_MONTE_CARLO);
+		lazyQMC.setSamplingScheme(SamplingScheme.QUASI_MONTE_CARLO);
+		lazyQMC.setLazyGeneration(true);
+		eagerQMC.update();
+		lazyQMC.update();
+		lazyQMC.streamMarginalProbabilities(Arrays.asList(bundle), conditioningRVs, realizations, 500);
+		for(int i = 0; i < 1000; ++i)
+			for(int j = 0; j < 16; ++j)
+				assertTrue( lazyQMC.getSample(i)[j] == eagerQMC.getSample(i)[j] );
+		
+		JointProbabilityMass eagerBombs = createJPMF(grid, 1000, 7L);					//Setters do not generate stale samples
+		JointProbabilityMass lazyBombs = createJPMF(grid, 1000, 7L);
+		eagerBombs.setSamplingScheme(SamplingScheme.QUASI_MONTE_CARLO);
+		lazyBombs.setSamplingScheme(SamplingScheme.QUASI_MONTE_CARLO);
+		lazyBombs.setLazyGeneration(true);
+		lazyBombs.setSamplingMetrics(metrics);
+		eagerBombs.update();
+		lazyBombs.update();
+		nGeneratedSamples[0] = 0;
+		lazyBombs.setNumberOfBombsToThrow(5);
+		lazyBombs.setSamplingScheme(SamplingScheme.STRATIFIED);
+		lazyBombs.setBombs(lazyBombs.getBombs(), Arrays.asList(0.9, 0.1));
+		assertTrue( nGeneratedSamples[0] == 0 );
+		for(int i = 0; i < 1000; ++i)
+			for(int j = 0; j < 16; ++j)
+				assertTrue( lazyBombs.getSample(i)[j] == eagerBombs.getSample(i)[j] );
+		assertTrue( nGeneratedSamples[0] == 1000 );
+		
+		eagerBombs.setNumberOfBombsToThrow(5);											//The next update uses the new configuration
+		eagerBombs.setSamplingScheme(SamplingScheme.STRATIFIED);
+		eagerBombs.setBombs(eagerBombs.getBombs(), Arrays.asList(0.9, 0.1));
+		eagerBombs.update();
+		lazyBombs.update();
+		assertTrue( lazyBombs.getMarginalProbability(bundle, conditioningRVs, realizations) == eagerBombs.getMarginalProbability(bundle, conditioningRVs, realizations) );
+	}
+}